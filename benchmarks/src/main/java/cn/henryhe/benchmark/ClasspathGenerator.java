@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * 生成冷启动测试用的类路径，目录结构：
+ * - lib/lib-K.jar：90%的类平均分布在jars个jar中
+ * - classes/：其余10%的类，模拟应用自身的编译输出
+ * - config/：config.properties、application.yml以及每个profile的application-{profile}.yml
+ * 类按模块/多层子包分布：base/mM/d1/.../dD/pJ/CI.class
+ * 生成结果按参数命名目录，参数相同的类路径只生成一次
+ */
+public final class ClasspathGenerator {
+
+    public static final String BASE_PACKAGE = "cn.coldstart";
+
+    public static final String[] PROFILES = {"dev", "local"};
+
+    private static final String MANIFEST = "classpath.txt";
+
+    private final int classes;
+    private final int jars;
+    private final int depth;
+    private final int yamlSections;
+    private final int propertyKeys;
+
+    public ClasspathGenerator(int classes, int jars, int depth, int yamlSections, int propertyKeys) {
+        this.classes = classes;
+        this.jars = Math.max(1, jars);
+        this.depth = depth;
+        this.yamlSections = yamlSections;
+        this.propertyKeys = propertyKeys;
+    }
+
+    /**
+     * 生成（或复用）类路径，返回按顺序排列的类路径条目
+     */
+    public List<Path> generate(Path workDir) throws IOException {
+        Path root = workDir.resolve("cp-" + classes + "c-" + jars + "j-" + depth + "d-" + yamlSections + "y-" + propertyKeys + "p");
+        Path manifest = root.resolve(MANIFEST);
+        if (Files.isRegularFile(manifest)) {
+            List<Path> entries = new ArrayList<>();
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                entries.add(root.resolve(line));
+            }
+            return entries;
+        }
+        Fixtures.deleteRecursively(root);
+        Files.createDirectories(root.resolve("lib"));
+        List<String> entries = new ArrayList<>();
+        entries.add("config");
+        entries.add("classes");
+        writeConfig(root.resolve("config"));
+
+        int inJars = classes - classes / 10;
+        int perJar = (inJars + jars - 1) / jars;
+        int next = 0;
+        for (int k = 0; k < jars && next < inJars; k++) {
+            String name = "lib/lib-" + k + ".jar";
+            int end = Math.min(inJars, next + perJar);
+            writeJar(root.resolve(name), next, end);
+            entries.add(name);
+            next = end;
+        }
+        Path classesDir = Files.createDirectories(root.resolve("classes"));
+        for (int i = next; i < classes; i++) {
+            String name = className(i);
+            Path file = classesDir.resolve(name + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, Fixtures.classFile(name));
+        }
+        // 最后写入清单，中途失败时下次重新生成
+        Files.write(manifest, entries, StandardCharsets.UTF_8);
+        List<Path> paths = new ArrayList<>();
+        for (String entry : entries) {
+            paths.add(root.resolve(entry));
+        }
+        return paths;
+    }
+
+    /**
+     * 每个包100个类，包分布在16个模块下，每个包位于depth层子目录中
+     */
+    String className(int index) {
+        int pkg = index / 100;
+        StringBuilder sb = new StringBuilder(BASE_PACKAGE.replace('.', '/'));
+        sb.append("/m").append(pkg % 16);
+        for (int level = 1; level <= depth; level++) {
+            sb.append("/d").append(level);
+        }
+        return sb.append("/p").append(pkg).append("/C").append(index).toString();
+    }
+
+    private void writeJar(Path jar, int from, int to) throws IOException {
+        Set<String> dirs = new HashSet<>();
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = from; i < to; i++) {
+                String name = className(i);
+                for (int slash = name.indexOf('/'); slash > 0; slash = name.indexOf('/', slash + 1)) {
+                    String dir = name.substring(0, slash + 1);
+                    if (dirs.add(dir)) {
+                        output.putNextEntry(new JarEntry(dir));
+                        output.closeEntry();
+                    }
+                }
+                output.putNextEntry(new JarEntry(name + ".class"));
+                output.write(Fixtures.classFile(name));
+                output.closeEntry();
+            }
+        }
+    }
+
+    private void writeConfig(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Properties props = Fixtures.config(propertyKeys, 2);
+        props.setProperty("app.profiles.active", String.join(",", PROFILES));
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("config.properties"), StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+        Files.write(dir.resolve("application.yml"), Fixtures.yaml(yamlSections));
+        for (String profile : PROFILES) {
+            // profile只覆盖一部分节点
+            Files.write(dir.resolve("application-" + profile + ".yml"), Fixtures.yaml(Math.max(1, yamlSections / 10)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.asList(classes + " classes", jars + " jars", "depth " + depth,
+                yamlSections + " yaml sections", propertyKeys + " properties").toString();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 冷启动测试：为每个类数量生成类路径，然后多次启动新的JVM执行ColdStartMain，汇总各项指标
+ * 用法：java -cp target/benchmarks.jar cn.henryhe.benchmark.ColdStartHarness [选项]
+ *   --classes 1000,10000,50000,200000  类数量，逗号分隔
+ *   --jars 50                          jar数量
+ *   --depth 4                          包的嵌套层数
+ *   --yaml 2000                        application.yml的节点数
+ *   --properties 5000                  config.properties的key数
+ *   --iterations 10                    每个类数量启动JVM的次数
+ *   --work target/coldstart            类路径和结果的目录
+ *   --jvm-args "-Xmx512m -XX:+UseG1GC" 子JVM的参数
+ *   --drop-caches                      每次启动前清空页缓存（需要root，写/proc/sys/vm/drop_caches）
+ * 每个指标输出最小值、中位数、p90和最大值，原始数据写入work目录下的coldstart-results.csv
+ */
+public class ColdStartHarness {
+
+    private static final String[] METRICS = {"wallMs", "jvmStartMs", "scanMs", "configMs", "cpuMs", "peakRssKb", "gcCount", "gcMs", "loadedClasses"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] classCounts = Arrays.stream(options.getOrDefault("classes", "1000,10000,50000,200000").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        int jars = Integer.parseInt(options.getOrDefault("jars", "50"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "4"));
+        int yaml = Integer.parseInt(options.getOrDefault("yaml", "2000"));
+        int properties = Integer.parseInt(options.getOrDefault("properties", "5000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "10"));
+        Path work = Paths.get(options.getOrDefault("work", "target/coldstart")).toAbsolutePath();
+        List<String> jvmArgs = split(options.getOrDefault("jvm-args", ""));
+        boolean dropCaches = options.containsKey("drop-caches");
+
+        Files.createDirectories(work);
+        Path csv = work.resolve("coldstart-results.csv");
+        try (Writer out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("classes,iteration," + String.join(",", METRICS) + "\n");
+            for (int classes : classCounts) {
+                ClasspathGenerator generator = new ClasspathGenerator(classes, jars, depth, yaml, properties);
+                long generateStart = System.nanoTime();
+                List<Path> classpath = generator.generate(work);
+                System.out.println("classpath " + generator + " ready in " + (System.nanoTime() - generateStart) / 1_000_000 + " ms");
+                Map<String, List<Long>> samples = new LinkedHashMap<>();
+                for (int i = 0; i < iterations; i++) {
+                    if (dropCaches) {
+                        dropCaches();
+                    }
+                    Map<String, Long> run = runOnce(classpath, jvmArgs);
+                    StringBuilder row = new StringBuilder().append(classes).append(',').append(i);
+                    for (String metric : METRICS) {
+                        long value = run.getOrDefault(metric, -1L);
+                        samples.computeIfAbsent(metric, k -> new ArrayList<>()).add(value);
+                        row.append(',').append(value);
+                    }
+                    out.write(row.append('\n').toString());
+                }
+                out.flush();
+                report(classes, samples);
+            }
+        }
+        System.out.println("raw results: " + csv);
+    }
+
+    /**
+     * 启动一个新的JVM，wallMs为从启动进程到进程退出的时间
+     */
+    private static Map<String, Long> runOnce(List<Path> classpath, List<String> jvmArgs) throws IOException, InterruptedException {
+        StringBuilder cp = new StringBuilder(System.getProperty("java.class.path"));
+        for (Path entry : classpath) {
+            cp.append(File.pathSeparator).append(entry);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(cp.toString());
+        command.add(ColdStartMain.class.getName());
+        command.add(ClasspathGenerator.BASE_PACKAGE);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Map<String, Long> metrics = new HashMap<>();
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ColdStartMain.PREFIX + " ")) {
+                    for (String pair : line.substring(ColdStartMain.PREFIX.length() + 1).split(" ")) {
+                        int eq = pair.indexOf('=');
+                        metrics.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq + 1)));
+                    }
+                } else {
+                    output.add(line);
+                }
+            }
+        }
+        int exit = process.waitFor();
+        long wall = (System.nanoTime() - start) / 1_000_000;
+        if (exit != 0 || metrics.isEmpty()) {
+            throw new IllegalStateException("cold start run failed with exit code " + exit + ":\n" + String.join("\n", output));
+        }
+        metrics.put("wallMs", wall);
+        return metrics;
+    }
+
+    private static void report(int classes, Map<String, List<Long>> samples) {
+        System.out.println(String.format("%-14s %10s %10s %10s %10s", classes + " classes", "min", "median", "p90", "max"));
+        for (Map.Entry<String, List<Long>> entry : samples.entrySet()) {
+            List<Long> values = new ArrayList<>(entry.getValue());
+            Collections.sort(values);
+            System.out.println(String.format("%-14s %10d %10d %10d %10d", entry.getKey(),
+                    values.get(0), percentile(values, 50), percentile(values, 90), values.get(values.size() - 1)));
+        }
+    }
+
+    /**
+     * 最近秩法，values已排序
+     */
+    private static long percentile(List<Long> values, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * values.size());
+        return values.get(Math.max(0, rank - 1));
+    }
+
+    private static void dropCaches() throws IOException, InterruptedException {
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        Path dropCaches = Paths.get("/proc/sys/vm/drop_caches");
+        if (!Files.isWritable(dropCaches)) {
+            throw new IllegalStateException("--drop-caches requires write access to " + dropCaches);
+        }
+        Files.write(dropCaches, "3\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "");
+            }
+        }
+        return options;
+    }
+
+    private static List<String> split(String value) {
+        List<String> result = new ArrayList<>();
+        for (String part : value.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import cn.henryhe.io.ClassMetadata;
+import cn.henryhe.io.ConfigBootstrap;
+import cn.henryhe.io.PropertyResolver;
+import cn.henryhe.io.ResourceResolver;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在新启动的JVM中执行一次扫描和配置加载，最后输出一行结果供ColdStartHarness解析：
+ * COLDSTART key=value key=value ...
+ * 时间单位为毫秒，内存单位为KB
+ */
+public class ColdStartMain {
+
+    public static final String PREFIX = "COLDSTART";
+
+    public static void main(String[] args) throws Exception {
+        String basePackage = args.length > 0 ? args[0] : ClasspathGenerator.BASE_PACKAGE;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        // JVM启动到main的时间
+        metrics.put("jvmStartMs", ManagementFactory.getRuntimeMXBean().getUptime());
+
+        long start = System.nanoTime();
+        List<ClassMetadata> classes = new ResourceResolver(basePackage).scanClassMetadata(metadata -> !metadata.isInterface());
+        long scanned = System.nanoTime();
+        PropertyResolver resolver = new ConfigBootstrap("config.properties", "application.yml").load();
+        // 经过占位符的查找和类型转换
+        int sum = 0;
+        for (int i = 0; i < 100 && resolver.containsProperty(Fixtures.key(i, 0)); i++) {
+            sum += resolver.getProperty(Fixtures.key(i, 0), Integer.class);
+        }
+        long configured = System.nanoTime();
+
+        metrics.put("classes", classes.size());
+        metrics.put("configSources", resolver.getPropertySources().size());
+        metrics.put("checksum", sum);
+        metrics.put("scanMs", (scanned - start) / 1_000_000);
+        metrics.put("configMs", (configured - scanned) / 1_000_000);
+        metrics.put("mainMs", (configured - start) / 1_000_000);
+        metrics.put("cpuMs", processCpuMillis());
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        metrics.put("gcCount", gcCount);
+        metrics.put("gcMs", gcMillis);
+        metrics.put("peakRssKb", procStatus("VmHWM"));
+        metrics.put("loadedClasses", ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+
+        StringBuilder sb = new StringBuilder(PREFIX);
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        System.out.println(sb);
+    }
+
+    /**
+     * 进程（所有线程）消耗的CPU时间，不支持时为-1
+     */
+    private static long processCpuMillis() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() / 1_000_000;
+        }
+        return -1;
+    }
+
+    /**
+     * /proc/self/status中的值（KB），非Linux系统为-1
+     */
+    private static long procStatus(String field) {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 忽略
+        }
+        return -1;
+    }
+}
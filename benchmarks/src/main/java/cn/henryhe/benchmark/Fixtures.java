@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试用的合成数据，内容只由参数决定，每次生成的结果相同
+ * - 类：每100个类一个子包，class文件只包含类名和父类，可以被ClassMetadataReader解析
+ * - 配置：N个key，每个key经过D层占位符引用才得到最终的值
+ * - yaml：S个节点，每个节点包含标量、嵌套对象和列表
+ */
+public final class Fixtures {
+
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    private Fixtures() {
+    }
+
+    /**
+     * 在目录中生成count个类，返回类路径根目录
+     */
+    public static Path classDirectory(Path root, String basePackage, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String name = className(basePackage, i);
+            Path file = root.resolve(name + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, classFile(name));
+        }
+        return root;
+    }
+
+    /**
+     * 生成包含count个类的jar，包含目录条目，与javac + jar打包的结果一致
+     */
+    public static Path classJar(Path jar, String basePackage, int count) throws IOException {
+        Set<String> dirs = new HashSet<>();
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < count; i++) {
+                String name = className(basePackage, i);
+                for (int slash = name.indexOf('/'); slash > 0; slash = name.indexOf('/', slash + 1)) {
+                    String dir = name.substring(0, slash + 1);
+                    if (dirs.add(dir)) {
+                        output.putNextEntry(new JarEntry(dir));
+                        output.closeEntry();
+                    }
+                }
+                output.putNextEntry(new JarEntry(name + ".class"));
+                output.write(classFile(name));
+                output.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * cn/bench + 123 -> cn/bench/p1/C123
+     */
+    public static String className(String basePackage, int index) {
+        return basePackage.replace('.', '/') + "/p" + (index / CLASSES_PER_PACKAGE) + "/C" + index;
+    }
+
+    /**
+     * 最小的class文件：常量池只有类名和java/lang/Object，没有字段和方法
+     */
+    public static byte[] classFile(String internalName) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + internalName.length());
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(0xCAFEBABE);
+            output.writeShort(0);
+            // Java 8
+            output.writeShort(52);
+            output.writeShort(5);
+            output.writeByte(1);
+            output.writeUTF(internalName);
+            output.writeByte(7);
+            output.writeShort(1);
+            output.writeByte(1);
+            output.writeUTF("java/lang/Object");
+            output.writeByte(7);
+            output.writeShort(3);
+            // public super
+            output.writeShort(0x0021);
+            output.writeShort(2);
+            output.writeShort(4);
+            // interfaces, fields, methods, attributes
+            output.writeShort(0);
+            output.writeShort(0);
+            output.writeShort(0);
+            output.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * keys个配置，key{i}.l0 -> ${key{i}.l1} -> ... -> key{i}.l{depth} = i
+     */
+    public static Properties config(int keys, int depth) {
+        Properties props = new Properties();
+        for (int i = 0; i < keys; i++) {
+            for (int level = 0; level < depth; level++) {
+                props.setProperty(key(i, level), "${" + key(i, level + 1) + "}");
+            }
+            props.setProperty(key(i, depth), Integer.toString(i));
+        }
+        return props;
+    }
+
+    public static String key(int index, int level) {
+        return "key" + index + ".l" + level;
+    }
+
+    /**
+     * sections个节点的yaml
+     */
+    public static byte[] yaml(int sections) {
+        StringBuilder sb = new StringBuilder(sections * 160);
+        for (int i = 0; i < sections; i++) {
+            sb.append("section").append(i).append(":\n")
+                    .append("  name: section-").append(i).append('\n')
+                    .append("  enabled: ").append(i % 2 == 0).append('\n')
+                    .append("  port: ").append(8000 + i).append('\n')
+                    .append("  ratio: ").append(i / 100.0).append('\n')
+                    .append("  datasource:\n")
+                    .append("    url: jdbc:mysql://db").append(i).append(":3306/app\n")
+                    .append("    pool:\n")
+                    .append("      size: ").append(i % 32).append('\n')
+                    .append("  tags: [a").append(i).append(", b").append(i).append(", c").append(i).append("]\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * size字节的文本文件（ASCII，按行分隔）
+     */
+    public static byte[] text(int size) {
+        byte[] content = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            content[i] = i % 80 == 79 ? (byte) '\n' : (byte) ('a' + random.nextInt(26));
+        }
+        return content;
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import cn.henryhe.io.PropertyResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PropertyResolver查找：N个key，占位符深度D，冻结前后对比
+ * key按固定步长轮换，避免每次都命中同一个缓存行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyResolverBenchmark {
+
+    @Param({"100", "10000"})
+    public int keys;
+
+    @Param({"0", "3", "10"})
+    public int depth;
+
+    /**
+     * 是否先调用freeze一次性解析所有占位符
+     */
+    @Param({"false", "true"})
+    public boolean frozen;
+
+    private PropertyResolver resolver;
+    private String[] entryKeys;
+    private String[] valueKeys;
+    private String[] missingKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resolver = new PropertyResolver(Fixtures.config(keys, depth));
+        if (frozen) {
+            resolver.freeze();
+        }
+        entryKeys = new String[keys];
+        valueKeys = new String[keys];
+        missingKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            missingKeys[i] = "missing" + i;
+            entryKeys[i] = Fixtures.key(i, 0);
+            valueKeys[i] = Fixtures.key(i, depth);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            next = (next + 7919) % bound;
+            return next;
+        }
+    }
+
+    /**
+     * 经过depth层占位符得到值
+     */
+    @Benchmark
+    public String getProperty(Cursor cursor) {
+        return resolver.getProperty(entryKeys[cursor.next(keys)]);
+    }
+
+    @Benchmark
+    public Integer getPropertyTyped(Cursor cursor) {
+        return resolver.getProperty(entryKeys[cursor.next(keys)], Integer.class);
+    }
+
+    /**
+     * 没有占位符的直接查找
+     */
+    @Benchmark
+    public String getPropertyDirect(Cursor cursor) {
+        return resolver.getProperty(valueKeys[cursor.next(keys)]);
+    }
+
+    @Benchmark
+    public String getPropertyMissing(Cursor cursor) {
+        return resolver.getProperty(missingKeys[cursor.next(keys)]);
+    }
+}
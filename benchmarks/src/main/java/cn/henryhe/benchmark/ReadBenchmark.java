@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import cn.henryhe.io.JarFileCache;
+import cn.henryhe.utils.ClassPathUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * ClassPathUtils读取：目录/jar中大小为size的文件
+ * 文件在页缓存中，测量的是读取路径本身的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+    private static final String NAME = "bench/data.txt";
+
+    @Param({"1024", "65536", "1048576", "8388608"})
+    public int size;
+
+    @Param({"dir", "jar"})
+    public String layout;
+
+    private Path root;
+    private URLClassLoader classLoader;
+    private ClassLoader original;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("read-benchmark");
+        byte[] content = Fixtures.text(size);
+        Path classpath;
+        if ("jar".equals(layout)) {
+            classpath = root.resolve("data.jar");
+            try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(classpath))) {
+                output.putNextEntry(new JarEntry(NAME));
+                output.write(content);
+                output.closeEntry();
+            }
+        } else {
+            classpath = root.resolve("classes");
+            Files.createDirectories(classpath.resolve(NAME).getParent());
+            Files.write(classpath.resolve(NAME), content);
+        }
+        classLoader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null);
+        original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(original);
+        classLoader.close();
+        JarFileCache.shared().clear();
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public byte[] readAllBytes() {
+        return ClassPathUtils.readAllBytes(NAME);
+    }
+
+    @Benchmark
+    public String readString() {
+        return ClassPathUtils.readString(NAME);
+    }
+
+    /**
+     * 对照：通过getResourceAsStream读取全部内容
+     */
+    @Benchmark
+    public byte[] readInputStream() {
+        return ClassPathUtils.readInputStream(NAME, ClassPathUtils::readAllBytes);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.benchmark;
+
+import cn.henryhe.io.ClassMetadata;
+import cn.henryhe.io.JarFileCache;
+import cn.henryhe.io.Resource;
+import cn.henryhe.io.ResourceResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResourceResolver扫描：目录/jar中的N个类
+ * 每次迭代使用新的JarFileCache，测量的是冷启动时的一次完整扫描，不包括操作系统的页缓存
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+
+    private static final String BASE_PACKAGE = "cn.bench";
+
+    @Param({"100", "1000", "10000"})
+    public int classes;
+
+    @Param({"dir", "jar"})
+    public String layout;
+
+    private Path root;
+    private URLClassLoader classLoader;
+    private ClassLoader original;
+    private ResourceResolver resolver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("scan-benchmark");
+        Path classpath = "jar".equals(layout)
+                ? Fixtures.classJar(root.resolve("classes.jar"), BASE_PACKAGE, classes)
+                : Fixtures.classDirectory(root.resolve("classes"), BASE_PACKAGE, classes);
+        classLoader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null);
+        // Scope.Thread的Setup在执行基准的线程上调用
+        original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+    }
+
+    @Setup(Level.Iteration)
+    public void newResolver() {
+        resolver = new ResourceResolver(BASE_PACKAGE);
+        resolver.setJarFileCache(new JarFileCache(16));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(original);
+        classLoader.close();
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public List<String> scan() {
+        return resolver.scan(Resource::getName);
+    }
+
+    @Benchmark
+    public List<String> scanParallel() {
+        return resolver.scanParallel(Resource::getName);
+    }
+
+    @Benchmark
+    public List<ClassMetadata> scanClassMetadata() {
+        return resolver.scanClassMetadata(metadata -> true);
+    }
+}
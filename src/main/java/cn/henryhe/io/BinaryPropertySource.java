@@ -0,0 +1,638 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import cn.henryhe.metrics.Metrics;
+import cn.henryhe.metrics.MetricsRegistry;
+import cn.henryhe.metrics.Span;
+import cn.henryhe.utils.ClassPathUtils;
+import cn.henryhe.utils.YamlUtils;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 编译后的二进制配置快照，通过mmap打开，直接在映射的内存中查找，不需要解析yaml/properties
+ * 文件格式（大端）：
+ * - 头部：magic、版本、来源数、key数、列表元素数、字符串池大小
+ * - 来源指纹：名称、URL、大小、修改时间（非本地文件为内容的CRC32）
+ * - key表：按UTF-8字节序排序，每项为key在字符串池中的位置、值类型、值
+ * - 列表元素表：值类型、值；列表和Map的值为首个元素的位置和元素数，Map的元素为key、值交替排列
+ * - 字符串池：去重后的UTF-8字节
+ * 打开时检查所有偏移都在文件范围内，损坏的快照抛出IOException
+ * 任意一个来源的指纹变化时重新编译
+ */
+public final class BinaryPropertySource implements PropertySource {
+
+    private static final Logger LOGGER = Logger.getLogger(BinaryPropertySource.class);
+
+    private static final int MAGIC = 0x48574346;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int SOURCE_SIZE = 32;
+    private static final int ENTRY_SIZE = 20;
+    private static final int ELEMENT_SIZE = 12;
+
+    private static final int STRING = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int BOOLEAN = 4;
+    private static final int LIST = 5;
+    private static final int MAP = 6;
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int sourceCount;
+    private final int entryCount;
+    private final int entriesOffset;
+    private final int elementsOffset;
+    private final int poolOffset;
+    private Set<String> keys;
+
+    private BinaryPropertySource(String name, ByteBuffer buffer) throws IOException {
+        this.name = name;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a config snapshot");
+        }
+        this.sourceCount = buffer.getInt(8);
+        this.entryCount = buffer.getInt(12);
+        int elementCount = buffer.getInt(16);
+        int poolSize = buffer.getInt(20);
+        if (sourceCount < 0 || entryCount < 0 || elementCount < 0 || poolSize < 0) {
+            throw new IOException("Corrupt config snapshot");
+        }
+        long entries = HEADER_SIZE + (long) sourceCount * SOURCE_SIZE;
+        long elements = entries + (long) entryCount * ENTRY_SIZE;
+        long pool = elements + (long) elementCount * ELEMENT_SIZE;
+        if (pool + poolSize != buffer.capacity()) {
+            throw new IOException("Truncated config snapshot");
+        }
+        this.entriesOffset = (int) entries;
+        this.elementsOffset = (int) elements;
+        this.poolOffset = (int) pool;
+        validate(elementCount, poolSize);
+    }
+
+    /**
+     * 检查所有字符串位置和元素范围，之后的查找不会越界
+     */
+    private void validate(int elementCount, int poolSize) throws IOException {
+        for (int i = 0; i < sourceCount; i++) {
+            int offset = HEADER_SIZE + i * SOURCE_SIZE;
+            checkString(buffer.getInt(offset), buffer.getInt(offset + 4), poolSize);
+            checkString(buffer.getInt(offset + 8), buffer.getInt(offset + 12), poolSize);
+        }
+        for (int i = 0; i < entryCount; i++) {
+            int entry = entriesOffset + i * ENTRY_SIZE;
+            checkString(buffer.getInt(entry), buffer.getInt(entry + 4), poolSize);
+            checkValue(buffer.getInt(entry + 8), buffer.getLong(entry + 12), elementCount, poolSize);
+        }
+        for (int i = 0; i < elementCount; i++) {
+            int element = elementsOffset + i * ELEMENT_SIZE;
+            // 嵌套容器的元素写在引用它的元素之前，只允许向前引用，避免循环
+            checkValue(buffer.getInt(element), buffer.getLong(element + 4), i, poolSize);
+        }
+    }
+
+    /**
+     * @param limit 列表、Map的元素必须在limit之前
+     */
+    private static void checkValue(int type, long value, int limit, int poolSize) throws IOException {
+        switch (type) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                return;
+            case STRING:
+                checkString((int) (value >>> 32), (int) value, poolSize);
+                return;
+            case LIST:
+            case MAP:
+                int first = (int) (value >>> 32);
+                long count = type == MAP ? 2L * (int) value : (int) value;
+                if (first < 0 || count < 0 || first + count > limit) {
+                    throw new IOException("Corrupt config snapshot");
+                }
+                return;
+            default:
+                throw new IOException("Corrupt config snapshot");
+        }
+    }
+
+    private static void checkString(int offset, int length, int poolSize) throws IOException {
+        if (offset < 0 || length < 0 || (long) offset + length > poolSize) {
+            throw new IOException("Corrupt config snapshot");
+        }
+    }
+
+    /**
+     * 打开快照，指纹与resources一致时直接使用，否则从类路径重新编译后再打开
+     * @param snapshotFile 快照文件
+     * @param resources 类路径上的配置文件（.yaml/.yml/.properties），后面的覆盖前面的，不存在的文件跳过
+     * @return 名为application的配置来源
+     * @throws IOException
+     */
+    public static BinaryPropertySource load(Path snapshotFile, List<String> resources) throws IOException {
+        List<Fingerprint> fingerprints = new ArrayList<>(resources.size());
+        for (String resource : resources) {
+            fingerprints.add(Fingerprint.of(resource));
+        }
+        if (Files.isRegularFile(snapshotFile)) {
+            try {
+                BinaryPropertySource source = open(snapshotFile);
+                if (source.fingerprints().equals(fingerprints)) {
+                    return source;
+                }
+            } catch (IOException | RuntimeException e) {
+                // 长度正确但内容损坏时，读取偏移越界等异常同样按未命中处理，重新编译
+                LOGGER.debug("ignore broken config snapshot " + snapshotFile, e);
+            }
+        }
+        Map<String, Object> properties = new HashMap<>();
+        for (String resource : resources) {
+            compile(resource, properties);
+        }
+        write(snapshotFile, fingerprints, properties);
+        return open(snapshotFile);
+    }
+
+    /**
+     * 映射快照文件，不检查指纹
+     * @param snapshotFile
+     * @return
+     * @throws IOException
+     */
+    public static BinaryPropertySource open(Path snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            return new BinaryPropertySource(PropertyResolver.APPLICATION_SOURCE,
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static void compile(String resource, Map<String, Object> properties) {
+        if (getContextClassLoader().getResource(resource) == null) {
+            return;
+        }
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.CONFIG_SOURCE);
+        int before = properties.size();
+        if (resource.endsWith(".yaml") || resource.endsWith(".yml")) {
+            ClassPathUtils.readInputStream(resource, input -> {
+                YamlUtils.loadYaml(input, properties);
+                return null;
+            });
+        } else {
+            Properties props = ClassPathUtils.readPropertiesByName(resource);
+            for (String key : props.stringPropertyNames()) {
+                properties.put(key, props.getProperty(key));
+            }
+        }
+        MetricsRegistry.get().configParsed(resource, span, properties.size() - before);
+    }
+
+    /**
+     * 写入快照，先写临时文件再原子替换
+     */
+    static void write(Path file, List<Fingerprint> fingerprints, Map<String, Object> properties) throws IOException {
+        Pool pool = new Pool();
+        // 按UTF-8字节序排序，与查找时的比较方式一致
+        byte[][] keys = new byte[properties.size()][];
+        String[] names = new String[properties.size()];
+        int n = 0;
+        for (String key : properties.keySet()) {
+            keys[n] = key.getBytes(StandardCharsets.UTF_8);
+            names[n++] = key;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(keys[a], keys[b]));
+
+        ByteBuffer entries = ByteBuffer.allocate(n * ENTRY_SIZE);
+        List<long[]> elements = new ArrayList<>();
+        int entryCount = 0;
+        for (int i : order) {
+            Object value = properties.get(names[i]);
+            long[] encoded = encode(value, pool, elements);
+            entries.putInt(pool.add(keys[i])).putInt(keys[i].length).putInt((int) encoded[0]).putLong(encoded[1]);
+            entryCount++;
+        }
+        List<long[]> sources = new ArrayList<>();
+        for (Fingerprint fingerprint : fingerprints) {
+            byte[] nameBytes = fingerprint.name.getBytes(StandardCharsets.UTF_8);
+            byte[] urlBytes = fingerprint.url.getBytes(StandardCharsets.UTF_8);
+            sources.add(new long[] {pool.add(nameBytes), nameBytes.length, pool.add(urlBytes), urlBytes.length,
+                    fingerprint.size, fingerprint.stamp});
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (OutputStream output = Files.newOutputStream(tmp);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(sources.size());
+            data.writeInt(entryCount);
+            data.writeInt(elements.size());
+            data.writeInt(pool.size());
+            for (long[] source : sources) {
+                data.writeInt((int) source[0]);
+                data.writeInt((int) source[1]);
+                data.writeInt((int) source[2]);
+                data.writeInt((int) source[3]);
+                data.writeLong(source[4]);
+                data.writeLong(source[5]);
+            }
+            data.write(entries.array(), 0, entryCount * ENTRY_SIZE);
+            for (long[] element : elements) {
+                data.writeInt((int) element[0]);
+                data.writeLong(element[1]);
+            }
+            pool.writeTo(data);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 嵌套的列表、Map先写入内部的元素，再写入自身的元素，每个容器的元素连续排列
+     * @return {类型, 值}
+     */
+    private static long[] encode(Object value, Pool pool, List<long[]> elements) {
+        if (value instanceof Integer) {
+            return new long[] {INT, (Integer) value};
+        } else if (value instanceof Long) {
+            return new long[] {LONG, (Long) value};
+        } else if (value instanceof Double) {
+            return new long[] {DOUBLE, Double.doubleToRawLongBits((Double) value)};
+        } else if (value instanceof Boolean) {
+            return new long[] {BOOLEAN, (Boolean) value ? 1 : 0};
+        } else if (value instanceof List) {
+            List<long[]> encoded = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                encoded.add(encode(element == null ? "" : element, pool, elements));
+            }
+            int first = elements.size();
+            elements.addAll(encoded);
+            return new long[] {LIST, ((long) first << 32) | encoded.size()};
+        } else if (value instanceof Map) {
+            List<long[]> encoded = new ArrayList<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                encoded.add(encode(String.valueOf(entry.getKey()), pool, elements));
+                encoded.add(encode(entry.getValue() == null ? "" : entry.getValue(), pool, elements));
+            }
+            int first = elements.size();
+            elements.addAll(encoded);
+            return new long[] {MAP, ((long) first << 32) | (encoded.size() / 2)};
+        }
+        byte[] bytes = PropertyResolver.stringValue(value).getBytes(StandardCharsets.UTF_8);
+        return new long[] {STRING, ((long) pool.add(bytes) << 32) | bytes.length};
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = getValue(key);
+        return value == null ? null : PropertyResolver.stringValue(value);
+    }
+
+    @Override
+    public Object getValue(String key) {
+        int index = indexOf(key.getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            return null;
+        }
+        int entry = entriesOffset + index * ENTRY_SIZE;
+        return decode(buffer.getInt(entry + 8), buffer.getLong(entry + 12));
+    }
+
+    @Override
+    public Set<String> keys() {
+        Set<String> keys = this.keys;
+        if (keys == null) {
+            keys = new AbstractSet<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new Iterator<String>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < entryCount;
+                        }
+
+                        @Override
+                        public String next() {
+                            if (index >= entryCount) {
+                                throw new NoSuchElementException();
+                            }
+                            return key(index++);
+                        }
+                    };
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof String && indexOf(((String) o).getBytes(StandardCharsets.UTF_8)) >= 0;
+                }
+
+                @Override
+                public int size() {
+                    return entryCount;
+                }
+            };
+            this.keys = keys;
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean containsPrefix(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        int index = lowerBound(bytes);
+        return index < entryCount && startsWith(index, bytes);
+    }
+
+    @Override
+    public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        for (int index = lowerBound(bytes); index < entryCount && startsWith(index, bytes); index++) {
+            int entry = entriesOffset + index * ENTRY_SIZE;
+            action.accept(key(index), PropertyResolver.stringValue(decode(buffer.getInt(entry + 8), buffer.getLong(entry + 12))));
+        }
+    }
+
+    /**
+     * 编译时记录的来源指纹
+     */
+    List<Fingerprint> fingerprints() {
+        List<Fingerprint> fingerprints = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            int offset = HEADER_SIZE + i * SOURCE_SIZE;
+            fingerprints.add(new Fingerprint(string(buffer.getInt(offset), buffer.getInt(offset + 4)),
+                    string(buffer.getInt(offset + 8), buffer.getInt(offset + 12)),
+                    buffer.getLong(offset + 16), buffer.getLong(offset + 24)));
+        }
+        return fingerprints;
+    }
+
+    private Object decode(int type, long value) {
+        switch (type) {
+            case INT:
+                return (int) value;
+            case LONG:
+                return value;
+            case DOUBLE:
+                return Double.longBitsToDouble(value);
+            case BOOLEAN:
+                return value != 0;
+            case LIST:
+                int first = (int) (value >>> 32);
+                int count = (int) value;
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int element = elementsOffset + (first + i) * ELEMENT_SIZE;
+                    list.add(decode(buffer.getInt(element), buffer.getLong(element + 4)));
+                }
+                return Collections.unmodifiableList(list);
+            case MAP:
+                int firstPair = (int) (value >>> 32);
+                int pairs = (int) value;
+                Map<String, Object> map = new LinkedHashMap<>(pairs * 4 / 3 + 1);
+                for (int i = 0; i < pairs; i++) {
+                    int element = elementsOffset + (firstPair + i * 2) * ELEMENT_SIZE;
+                    map.put(PropertyResolver.stringValue(decode(buffer.getInt(element), buffer.getLong(element + 4))),
+                            decode(buffer.getInt(element + ELEMENT_SIZE), buffer.getLong(element + ELEMENT_SIZE + 4)));
+                }
+                return Collections.unmodifiableMap(map);
+            default:
+                return string((int) (value >>> 32), (int) value);
+        }
+    }
+
+    private String key(int index) {
+        int entry = entriesOffset + index * ENTRY_SIZE;
+        return string(buffer.getInt(entry), buffer.getInt(entry + 4));
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        int start = poolOffset + offset;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int indexOf(byte[] key) {
+        int index = lowerBound(key);
+        return index < entryCount && compareKey(index, key) == 0 ? index : -1;
+    }
+
+    /**
+     * 第一个不小于key的位置
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 在映射的内存中直接比较，不创建字符串
+     */
+    private int compareKey(int index, byte[] key) {
+        int entry = entriesOffset + index * ENTRY_SIZE;
+        int start = poolOffset + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int min = Math.min(length, key.length);
+        for (int i = 0; i < min; i++) {
+            int c = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int index, byte[] prefix) {
+        int entry = entriesOffset + index * ENTRY_SIZE;
+        int start = poolOffset + buffer.getInt(entry);
+        if (buffer.getInt(entry + 4) < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int min = Math.min(a.length, b.length);
+        for (int i = 0; i < min; i++) {
+            int c = (a[i] & 0xff) - (b[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static ClassLoader getContextClassLoader() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        return cl != null ? cl : BinaryPropertySource.class.getClassLoader();
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryPropertySource{" + name + ", " + entryCount + " keys}";
+    }
+
+    /**
+     * 去重的字符串池
+     */
+    private static final class Pool {
+
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int add(byte[] value) {
+            String key = new String(value, StandardCharsets.ISO_8859_1);
+            Integer offset = offsets.get(key);
+            if (offset == null) {
+                offset = bytes.size();
+                bytes.write(value, 0, value.length);
+                offsets.put(key, offset);
+            }
+            return offset;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            bytes.writeTo(output);
+        }
+    }
+
+    /**
+     * 配置文件的指纹：本地文件（包括jar包）为大小和修改时间，其他为内容的CRC32，不存在时大小为-1
+     */
+    static final class Fingerprint {
+
+        final String name;
+        final String url;
+        final long size;
+        final long stamp;
+
+        Fingerprint(String name, String url, long size, long stamp) {
+            this.name = name;
+            this.url = url;
+            this.size = size;
+            this.stamp = stamp;
+        }
+
+        static Fingerprint of(String resource) throws IOException {
+            URL url = getContextClassLoader().getResource(resource);
+            if (url == null) {
+                return new Fingerprint(resource, "", -1, 0);
+            }
+            URL file = url;
+            if ("jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+                file = ((JarURLConnection) connection).getJarFileURL();
+            }
+            if ("file".equals(file.getProtocol())) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(Paths.get(file.toURI()), BasicFileAttributes.class);
+                    return new Fingerprint(resource, url.toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+            }
+            CRC32 crc = new CRC32();
+            byte[] bytes;
+            try (InputStream input = url.openStream()) {
+                bytes = ClassPathUtils.readAllBytes(input);
+            }
+            crc.update(bytes, 0, bytes.length);
+            return new Fingerprint(resource, url.toString(), bytes.length, crc.getValue());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return size == that.size && stamp == that.stamp && name.equals(that.name) && url.equals(that.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, url, size, stamp);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+/**
+ * 从字节码中读取的类信息，不需要加载类
+ */
+public class ClassMetadata {
+
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_ANNOTATION = 0x2000;
+
+    private final int access;
+    private final String className;
+    private final String superClassName;
+    private final List<String> interfaceNames;
+    private final List<String> annotationDescriptors;
+
+    ClassMetadata(int access, String className, String superClassName, List<String> interfaceNames, List<String> annotationDescriptors) {
+        this.access = access;
+        this.className = className;
+        this.superClassName = superClassName;
+        this.interfaceNames = interfaceNames;
+        this.annotationDescriptors = annotationDescriptors;
+    }
+
+    /**
+     * cn.henryhe.io.Resource
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * java.lang.Object没有父类，返回null
+     */
+    public String getSuperClassName() {
+        return superClassName;
+    }
+
+    public List<String> getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    /**
+     * RuntimeVisibleAnnotations中的注解描述符，如Ljava/lang/FunctionalInterface;
+     */
+    public List<String> getAnnotationDescriptors() {
+        return annotationDescriptors;
+    }
+
+    public boolean isInterface() {
+        return (access & ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAnnotation() {
+        return (access & ACC_ANNOTATION) != 0;
+    }
+
+    public boolean isAbstract() {
+        return (access & ACC_ABSTRACT) != 0;
+    }
+
+    /**
+     * 是否直接标注了注解，不解析元注解
+     * @param annotationClassName java.lang.FunctionalInterface
+     * @return
+     */
+    public boolean hasAnnotation(String annotationClassName) {
+        String descriptor = "L" + annotationClassName.replace('.', '/') + ";";
+        return annotationDescriptors.contains(descriptor);
+    }
+
+    public boolean hasAnnotation(Class<? extends Annotation> annotationType) {
+        return hasAnnotation(annotationType.getName());
+    }
+
+    @Override
+    public String toString() {
+        return "ClassMetadata{" +
+                "className='" + className + '\'' +
+                ", superClassName='" + superClassName + '\'' +
+                ", interfaceNames=" + interfaceNames +
+                ", annotationDescriptors=" + annotationDescriptors +
+                '}';
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import cn.henryhe.utils.ClassPathUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 简单的class文件解析器：只读取常量池、类名、父类、接口以及RuntimeVisibleAnnotations，
+ * 常量池中的字符串只记录偏移量，用到时才解码
+ */
+public class ClassMetadataReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final byte[] bytes;
+    /**
+     * 常量池每一项的起始偏移（tag之后）
+     */
+    private int[] offsets;
+    private int position;
+
+    private ClassMetadataReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static ClassMetadata read(InputStream inputStream) throws IOException {
+        return read(ClassPathUtils.readAllBytes(inputStream));
+    }
+
+    public static ClassMetadata read(byte[] bytes) throws IOException {
+        try {
+            return new ClassMetadataReader(bytes).parse();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file", e);
+        }
+    }
+
+    private ClassMetadata parse() throws IOException {
+        if (readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        // minor_version, major_version
+        position += 4;
+        readConstantPool();
+        int access = readUnsignedShort();
+        String className = className(readUnsignedShort());
+        int superIndex = readUnsignedShort();
+        String superClassName = superIndex == 0 ? null : className(superIndex);
+        int interfaceCount = readUnsignedShort();
+        List<String> interfaceNames = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaceNames.add(className(readUnsignedShort()));
+        }
+        // fields, methods
+        skipMembers();
+        skipMembers();
+        List<String> annotations = Collections.emptyList();
+        int attributeCount = readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            int nameIndex = readUnsignedShort();
+            int length = readInt();
+            int end = position + length;
+            if ("RuntimeVisibleAnnotations".equals(utf8(nameIndex))) {
+                annotations = readAnnotations();
+            }
+            position = end;
+        }
+        return new ClassMetadata(access, className, superClassName,
+                Collections.unmodifiableList(interfaceNames), Collections.unmodifiableList(annotations));
+    }
+
+    private void readConstantPool() throws IOException {
+        int count = readUnsignedShort();
+        offsets = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = bytes[position++];
+            offsets[i] = position;
+            switch (tag) {
+                case 1: // Utf8
+                    position += 2 + readUnsignedShort(position);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    position += 2;
+                    break;
+                case 15: // MethodHandle
+                    position += 3;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    position += 4;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    position += 8;
+                    // 占用两个常量池位置
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void skipMembers() {
+        int count = readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // access_flags, name_index, descriptor_index
+            position += 6;
+            skipAttributes();
+        }
+    }
+
+    private void skipAttributes() {
+        int count = readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            position += 2;
+            int length = readInt();
+            position += length;
+        }
+    }
+
+    private List<String> readAnnotations() throws IOException {
+        int count = readUnsignedShort();
+        List<String> descriptors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            descriptors.add(utf8(readUnsignedShort()));
+            skipElementValuePairs();
+        }
+        return descriptors;
+    }
+
+    private void skipElementValuePairs() throws IOException {
+        int pairs = readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            position += 2;
+            skipElementValue();
+        }
+    }
+
+    private void skipElementValue() throws IOException {
+        int tag = bytes[position++];
+        switch (tag) {
+            case 'B': case 'C': case 'D': case 'F': case 'I': case 'J': case 'S': case 'Z':
+            case 's': case 'c':
+                position += 2;
+                break;
+            case 'e':
+                position += 4;
+                break;
+            case '@':
+                // 嵌套注解
+                position += 2;
+                skipElementValuePairs();
+                break;
+            case '[':
+                int count = readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    skipElementValue();
+                }
+                break;
+            default:
+                throw new IOException("Unknown element value tag " + (char) tag);
+        }
+    }
+
+    /**
+     * CONSTANT_Class -> cn.henryhe.io.Resource
+     */
+    private String className(int classIndex) {
+        return utf8(readUnsignedShort(offsets[classIndex])).replace('/', '.');
+    }
+
+    /**
+     * 解码modified UTF-8
+     */
+    private String utf8(int index) {
+        int offset = offsets[index];
+        int length = readUnsignedShort(offset);
+        int pos = offset + 2;
+        int end = pos + length;
+        char[] chars = new char[length];
+        int n = 0;
+        while (pos < end) {
+            int c = bytes[pos++] & 0xff;
+            if (c < 0x80) {
+                chars[n++] = (char) c;
+            } else if ((c & 0xe0) == 0xc0) {
+                chars[n++] = (char) (((c & 0x1f) << 6) | (bytes[pos++] & 0x3f));
+            } else {
+                chars[n++] = (char) (((c & 0x0f) << 12) | ((bytes[pos++] & 0x3f) << 6) | (bytes[pos++] & 0x3f));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private int readUnsignedShort() {
+        int value = readUnsignedShort(position);
+        position += 2;
+        return value;
+    }
+
+    private int readUnsignedShort(int offset) {
+        return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+    }
+
+    private int readInt() {
+        int value = ((bytes[position] & 0xff) << 24) | ((bytes[position + 1] & 0xff) << 16)
+                | ((bytes[position + 2] & 0xff) << 8) | (bytes[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+}
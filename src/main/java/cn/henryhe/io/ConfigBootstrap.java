@@ -0,0 +1,298 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import cn.henryhe.metrics.Metrics;
+import cn.henryhe.metrics.MetricsRegistry;
+import cn.henryhe.metrics.Span;
+import cn.henryhe.utils.ClassPathUtils;
+import cn.henryhe.utils.IoExecutor;
+import cn.henryhe.utils.YamlUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 启动时加载类路径上的配置文件
+ * - 基础配置按给定顺序排列，例如config.properties、application.yml，后面的覆盖前面的
+ * - 每个激活的profile对应一组覆盖文件：application.yml -> application-dev.yml，后激活的profile优先
+ * - 所有文件在IoExecutor上同时读取解析，每个文件单独作为一层PropertySource，不合并复制
+ * - 不存在的文件跳过
+ * 激活的profile依次取自：setProfiles、系统属性app.profiles.active、环境变量APP_PROFILES_ACTIVE（includeEnvironment为true时）、
+ * 基础配置中的app.profiles.active，只有最后一种情况需要等基础配置解析完成后再读取profile文件
+ * 不同profile的resolver可以共享基础配置：loadBaseAsync解析一次，再分别传给load(List)
+ */
+public class ConfigBootstrap {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigBootstrap.class);
+
+    public static final String PROFILES_PROPERTY = "app.profiles.active";
+
+    private final List<String> baseNames;
+    private List<String> profiles;
+    private Executor executor = IoExecutor.shared();
+    private ConverterRegistry converters = new ConverterRegistry();
+    private boolean includeEnvironment = true;
+
+    public ConfigBootstrap(String... baseNames) {
+        this(Arrays.asList(baseNames));
+    }
+
+    public ConfigBootstrap(List<String> baseNames) {
+        this.baseNames = new ArrayList<>(baseNames);
+    }
+
+    /**
+     * 指定激活的profile，不再从系统属性、环境变量和配置文件中查找
+     * @param profiles
+     */
+    public void setProfiles(String... profiles) {
+        this.profiles = Arrays.asList(profiles);
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setConverterRegistry(ConverterRegistry converters) {
+        this.converters = converters;
+    }
+
+    /**
+     * 是否把环境变量作为优先级最低的一层，默认为true
+     * @param includeEnvironment
+     */
+    public void setIncludeEnvironment(boolean includeEnvironment) {
+        this.includeEnvironment = includeEnvironment;
+    }
+
+    /**
+     * 加载配置，任意文件解析失败时抛出异常
+     * @return
+     */
+    public PropertyResolver load() {
+        try {
+            return loadAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<PropertyResolver> loadAsync() {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.CONFIG_LOAD);
+        return loadAsync(loadBaseAsync(), span);
+    }
+
+    /**
+     * 使用已经解析的基础配置，只读取profile文件，例如为多个profile分别创建resolver
+     * @param baseSources loadBaseAsync的结果，按基础配置的顺序排列
+     * @return
+     */
+    public PropertyResolver load(List<? extends PropertySource> baseSources) {
+        try {
+            return loadAsync(baseSources).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<PropertyResolver> loadAsync(List<? extends PropertySource> baseSources) {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.CONFIG_LOAD);
+        return loadAsync(CompletableFuture.completedFuture(new ArrayList<>(baseSources)), span);
+    }
+
+    /**
+     * 同时读取所有基础配置，不存在的文件跳过
+     * @return 按给定顺序排列的配置来源
+     */
+    public CompletableFuture<List<PropertySource>> loadBaseAsync() {
+        ClassLoader cl = getContextClassLoader();
+        List<CompletableFuture<PropertySource>> base = new ArrayList<>(baseNames.size());
+        for (String name : baseNames) {
+            base.add(parseAsync(cl, name));
+        }
+        return allOf(base);
+    }
+
+    private CompletableFuture<PropertyResolver> loadAsync(CompletableFuture<List<PropertySource>> base, Span span) {
+        ClassLoader cl = getContextClassLoader();
+        List<String> known = configuredProfiles();
+        if (known != null) {
+            // profile已知，基础配置和profile文件一起读取
+            return combine(base, parseProfiles(cl, known), known, span);
+        }
+        return base.thenCompose(sources -> {
+            List<String> active = splitProfiles(lookup(sources, PROFILES_PROPERTY));
+            return combine(base, parseProfiles(cl, active), active, span);
+        });
+    }
+
+    /**
+     * application.yml + dev -> application-dev.yml
+     */
+    static String profileName(String baseName, String profile) {
+        int slash = baseName.lastIndexOf('/');
+        int dot = baseName.lastIndexOf('.');
+        if (dot <= slash) {
+            return baseName + "-" + profile;
+        }
+        return baseName.substring(0, dot) + "-" + profile + baseName.substring(dot);
+    }
+
+    private List<String> configuredProfiles() {
+        if (profiles != null) {
+            return profiles;
+        }
+        String value = System.getProperty(PROFILES_PROPERTY);
+        if (value == null && includeEnvironment) {
+            value = EnvironmentPropertySource.shared().getProperty(PROFILES_PROPERTY);
+        }
+        return value == null ? null : splitProfiles(value);
+    }
+
+    private List<CompletableFuture<PropertySource>> parseProfiles(ClassLoader cl, List<String> active) {
+        List<CompletableFuture<PropertySource>> futures = new ArrayList<>();
+        for (String profile : active) {
+            for (String name : baseNames) {
+                futures.add(parseAsync(cl, profileName(name, profile)));
+            }
+        }
+        return futures;
+    }
+
+    private CompletableFuture<PropertyResolver> combine(CompletableFuture<List<PropertySource>> base,
+                                                        List<CompletableFuture<PropertySource>> overlays, List<String> active, Span span) {
+        return base.thenCombine(allOf(overlays), (baseSources, overlaySources) -> {
+            List<PropertySource> sources = new ArrayList<>(baseSources);
+            sources.addAll(overlaySources);
+            // 后加载的优先，放在前面
+            Collections.reverse(sources);
+            if (includeEnvironment) {
+                sources.add(EnvironmentPropertySource.shared());
+            }
+            int loaded = sources.size() - (includeEnvironment ? 1 : 0);
+            MetricsRegistry.get().configLoaded(span, loaded);
+            LOGGER.info("loaded " + loaded + " config sources, active profiles " + active);
+            return new PropertyResolver(sources, converters);
+        });
+    }
+
+    /**
+     * 等待全部完成，按原顺序返回存在的来源
+     */
+    private static CompletableFuture<List<PropertySource>> allOf(List<CompletableFuture<PropertySource>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<PropertySource> sources = new ArrayList<>(futures.size());
+            for (CompletableFuture<PropertySource> future : futures) {
+                PropertySource source = future.join();
+                if (source != null) {
+                    sources.add(source);
+                }
+            }
+            return sources;
+        });
+    }
+
+    /**
+     * 后面的来源优先
+     */
+    private static String lookup(List<PropertySource> sources, String key) {
+        for (int i = sources.size() - 1; i >= 0; i--) {
+            String value = sources.get(i).getProperty(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> splitProfiles(String value) {
+        List<String> result = new ArrayList<>();
+        if (value != null) {
+            for (String profile : value.split(",")) {
+                if (!profile.trim().isEmpty()) {
+                    result.add(profile.trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    private CompletableFuture<PropertySource> parseAsync(ClassLoader cl, String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return parse(cl, name);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to load " + name, e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 文件不存在时返回null，解析耗时记录到MetricsRegistry
+     */
+    private static PropertySource parse(ClassLoader cl, String name) throws IOException {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.CONFIG_SOURCE);
+        String path = name.startsWith("/") ? name.substring(1) : name;
+        try (InputStream input = cl.getResourceAsStream(path)) {
+            if (input == null) {
+                return null;
+            }
+            Map<String, Object> properties = new HashMap<>();
+            if (path.endsWith(".yaml") || path.endsWith(".yml")) {
+                YamlUtils.loadYaml(input, properties);
+            } else {
+                Properties props = new Properties();
+                ClassPathUtils.loadProperties(input, props);
+                for (String key : props.stringPropertyNames()) {
+                    properties.put(key, props.getProperty(key));
+                }
+            }
+            MetricsRegistry.get().configParsed(name, span, properties.size());
+            return new MapPropertySource(name, properties);
+        }
+    }
+
+    private static ClassLoader getContextClassLoader() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) {
+            cl = ConfigBootstrap.class.getClassLoader();
+        }
+        return cl;
+    }
+}
@@ -22,17 +22,16 @@
  * SOFTWARE.
  */
 
+
 package cn.henryhe.io;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import java.util.Set;
 
 /**
- * ${key:defaultValue}
+ * 配置变化监听，只通知值发生变化（新增、修改、删除）的key
  */
-@Data
-@AllArgsConstructor
-public class PropertyExpr {
-    private String key;
-    private String defaultValue;
+@FunctionalInterface
+public interface ConfigChangeListener {
+
+    void onChange(Set<String> changedKeys);
 }
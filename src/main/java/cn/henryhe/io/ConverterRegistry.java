@@ -0,0 +1,268 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IllformedLocaleException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 每个PropertyResolver独享的类型转换器
+ * - 启动阶段通过register注册，第一次转换（或者调用freeze）之后冻结，不能再修改
+ * - 按类型查找转换器的结果缓存在ClassValue中，每个类型只解析一次
+ * - 未注册的类型依次尝试：基本类型/包装类型互转、枚举、静态valueOf(String)/of(String)/parse(CharSequence)、String构造方法
+ */
+public class ConverterRegistry {
+
+    /**
+     * 通过PropertyResolver.registerConverter注册的全局转换器，新建的registry会复制一份
+     */
+    static final Map<Class<?>, Function<String, ?>> GLOBAL = new ConcurrentHashMap<>();
+
+    /**
+     * yaml的timestamp：日期、时间之间为T/t或空白，小数秒可选，时区为Z或者±h[h][:mm]，可以与时间之间有空白
+     * 另外接受省略秒的ISO-8601写法，例如2023-01-01T00:00Z
+     */
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "(\\d{4})-(\\d{1,2})-(\\d{1,2})(?:(?:[Tt]|[ \\t]+)(\\d{1,2}):(\\d{2})(?::(\\d{2})(?:\\.(\\d*))?)?"
+                    + "(?:[ \\t]*(Z|[-+]\\d{1,2}(?::?\\d{2})?))?)?");
+
+    private static final Function<String, ?> UNSUPPORTED = s -> {
+        throw new IllegalStateException();
+    };
+
+    private final Map<Class<?>, Function<String, ?>> converters = new HashMap<>();
+
+    private volatile boolean frozen;
+
+    private final ClassValue<Function<String, ?>> resolved = new ClassValue<Function<String, ?>>() {
+        @Override
+        protected Function<String, ?> computeValue(Class<?> type) {
+            freeze();
+            return resolve(type);
+        }
+    };
+
+    public ConverterRegistry() {
+        // String类型:
+        converters.put(String.class, s -> s);
+        // boolean类型:
+        converters.put(boolean.class, s -> Boolean.parseBoolean(s));
+        converters.put(Boolean.class, s -> Boolean.valueOf(s));
+        // int/long/double类型:
+        converters.put(int.class, s -> Integer.parseInt(s));
+        converters.put(Integer.class, s -> Integer.valueOf(s));
+        converters.put(long.class, s -> Long.parseLong(s));
+        converters.put(Long.class, s -> Long.valueOf(s));
+        converters.put(double.class, s -> Double.parseDouble(s));
+        converters.put(Double.class, s -> Double.valueOf(s));
+        // Date/Time类型:
+        converters.put(Duration.class, s -> PropertyResolver.parseDuration(s));
+        converters.put(LocalDate.class, s -> LocalDate.parse(s));
+        converters.put(LocalTime.class, s -> LocalTime.parse(s));
+        converters.put(LocalDateTime.class, s -> LocalDateTime.parse(s));
+        converters.put(ZonedDateTime.class, s -> ZonedDateTime.parse(s));
+        // ISO-8601，不符合时按yaml的timestamp格式（yaml的时间戳保留原文）
+        converters.put(Instant.class, s -> parseInstant(s));
+        converters.put(Date.class, s -> Date.from(parseInstant(s)));
+        converters.putAll(GLOBAL);
+    }
+
+    /**
+     * 注册转换器，冻结后调用抛出IllegalStateException
+     * @param type
+     * @param converter
+     * @return
+     * @param <T>
+     */
+    public synchronized <T> ConverterRegistry register(Class<T> type, Function<String, ? extends T> converter) {
+        if (frozen) {
+            throw new IllegalStateException("ConverterRegistry is frozen, register converters before the first lookup");
+        }
+        converters.put(type, converter);
+        return this;
+    }
+
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public boolean supports(Class<?> type) {
+        return resolved.get(type) != UNSUPPORTED;
+    }
+
+    /**
+     * 获取类型对应的转换器，不支持的类型抛出IllformedLocaleException
+     * @param type
+     * @return
+     * @param <T>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Function<String, T> converterFor(Class<T> type) {
+        Function<String, ?> converter = resolved.get(type);
+        if (converter == UNSUPPORTED) {
+            throw new IllformedLocaleException("Unsupported value type" + type.getName());
+        }
+        return (Function<String, T>) converter;
+    }
+
+    public <T> T convert(Class<T> type, String value) {
+        return converterFor(type).apply(value);
+    }
+
+    /**
+     * 解析转换链，只在每个类型第一次使用时调用
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Function<String, ?> resolve(Class<?> type) {
+        Function<String, ?> converter = converters.get(type);
+        if (converter != null) {
+            return converter;
+        }
+        Class<?> boxed = MethodType.methodType(type).wrap().returnType();
+        Class<?> unboxed = MethodType.methodType(type).unwrap().returnType();
+        if (boxed != type && converters.containsKey(boxed)) {
+            return converters.get(boxed);
+        }
+        if (unboxed != type && converters.containsKey(unboxed)) {
+            return converters.get(unboxed);
+        }
+        if (type.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            return s -> Enum.valueOf(enumType, s.trim());
+        }
+        MethodHandle factory = findFactory(type);
+        if (factory != null) {
+            return s -> {
+                try {
+                    return factory.invoke(s);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalArgumentException("Cannot convert '" + s + "' to " + type.getName(), e);
+                }
+            };
+        }
+        return UNSUPPORTED;
+    }
+
+    private static MethodHandle findFactory(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return null;
+        }
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (String name : new String[] {"valueOf", "of", "parse"}) {
+            for (Class<?> parameter : new Class<?>[] {String.class, CharSequence.class}) {
+                try {
+                    return lookup.findStatic(type, name, MethodType.methodType(type, parameter))
+                            .asType(MethodType.methodType(Object.class, String.class));
+                } catch (NoSuchMethodException | IllegalAccessException e) {
+                    // 继续尝试
+                }
+            }
+        }
+        try {
+            return lookup.findConstructor(type, MethodType.methodType(void.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 优先按Instant.parse解析（例如2023-01-01T00:00Z），失败时按yaml的timestamp格式：
+     * 2001-12-14、2001-12-14t21:59:43.10-05:00、2001-12-14 21:59:43.10 -5，只有日期或者没有时区时按UTC
+     * @throws DateTimeParseException 两种格式都不符合
+     */
+    static Instant parseInstant(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            Matcher m = TIMESTAMP.matcher(value.trim());
+            if (!m.matches()) {
+                throw e;
+            }
+            return parseTimestamp(m);
+        }
+    }
+
+    private static Instant parseTimestamp(Matcher m) {
+        LocalDate date = LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)));
+        if (m.group(4) == null) {
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        int nanos = 0;
+        String fraction = m.group(7);
+        if (fraction != null && !fraction.isEmpty()) {
+            // 超过纳秒精度的部分截断
+            fraction = fraction.length() > 9 ? fraction.substring(0, 9) : fraction;
+            nanos = Integer.parseInt(fraction) * (int) Math.pow(10, 9 - fraction.length());
+        }
+        int seconds = m.group(6) == null ? 0 : Integer.parseInt(m.group(6));
+        LocalDateTime time = date.atTime(Integer.parseInt(m.group(4)), Integer.parseInt(m.group(5)), seconds, nanos);
+        return time.toInstant(offset(m.group(8)));
+    }
+
+    /**
+     * Z、+8、-05、+0530、+05:30
+     */
+    private static ZoneOffset offset(String zone) {
+        if (zone == null || "Z".equals(zone)) {
+            return ZoneOffset.UTC;
+        }
+        int sign = zone.charAt(0) == '-' ? -1 : 1;
+        String digits = zone.substring(1).replace(":", "");
+        int hours;
+        int minutes = 0;
+        if (digits.length() > 2) {
+            hours = Integer.parseInt(digits.substring(0, digits.length() - 2));
+            minutes = Integer.parseInt(digits.substring(digits.length() - 2));
+        } else {
+            hours = Integer.parseInt(digits);
+        }
+        return ZoneOffset.ofHoursMinutes(sign * hours, sign * minutes);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 环境变量配置来源，所有resolver共享同一个实例，不再复制System.getenv()
+ * 除了原始名称，也可以用宽松的名称查找：APP_VERSION 可以通过 app.version 查到
+ * 宽松名称的索引在第一次用到时构建，只构建一次
+ */
+public final class EnvironmentPropertySource implements PropertySource {
+
+    public static final String NAME = "systemEnvironment";
+
+    private static final EnvironmentPropertySource SHARED = new EnvironmentPropertySource(null);
+
+    private final Map<String, String> overrideEnv;
+
+    /**
+     * 宽松名称 -> 环境变量值
+     */
+    private volatile Map<String, String> relaxed;
+
+    /**
+     * 原始名称和宽松名称，用于按前缀查询
+     */
+    private volatile PropertyTrie<String> keys;
+
+    private EnvironmentPropertySource(Map<String, String> env) {
+        this.overrideEnv = env;
+    }
+
+    public static EnvironmentPropertySource shared() {
+        return SHARED;
+    }
+
+    /**
+     * 使用给定的变量代替System.getenv()，主要用于测试
+     * @param env
+     * @return
+     */
+    public static EnvironmentPropertySource of(Map<String, String> env) {
+        return new EnvironmentPropertySource(Collections.unmodifiableMap(new HashMap<>(env)));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        String value = env().get(key);
+        if (value == null) {
+            value = relaxed().get(relax(key));
+        }
+        return value;
+    }
+
+    @Override
+    public Set<String> keys() {
+        return trie().keySet();
+    }
+
+    @Override
+    public boolean containsPrefix(String prefix) {
+        return trie().containsPrefix(prefix);
+    }
+
+    @Override
+    public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        trie().forEachWithPrefix(prefix, action);
+    }
+
+    private PropertyTrie<String> trie() {
+        PropertyTrie<String> keys = this.keys;
+        if (keys == null) {
+            Map<String, String> all = new HashMap<>(relaxed());
+            all.putAll(env());
+            keys = PropertyTrie.of(all);
+            this.keys = keys;
+        }
+        return keys;
+    }
+
+    private Map<String, String> env() {
+        // System.getenv()本身返回JDK缓存的不可变Map
+        return overrideEnv != null ? overrideEnv : System.getenv();
+    }
+
+    private Map<String, String> relaxed() {
+        Map<String, String> relaxed = this.relaxed;
+        if (relaxed == null) {
+            relaxed = new HashMap<>();
+            for (Map.Entry<String, String> entry : env().entrySet()) {
+                relaxed.put(relax(entry.getKey()), entry.getValue());
+            }
+            relaxed = Collections.unmodifiableMap(relaxed);
+            this.relaxed = relaxed;
+        }
+        return relaxed;
+    }
+
+    /**
+     * APP_VERSION、app_version、App.Version -> app.version
+     */
+    static String relax(String name) {
+        return name.toLowerCase(Locale.ROOT).replace('_', '.');
+    }
+
+    @Override
+    public String toString() {
+        return "EnvironmentPropertySource{" + NAME + "}";
+    }
+}
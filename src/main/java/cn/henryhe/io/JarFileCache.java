@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 共享的jar句柄缓存
+ * - JarFile打开时只读取一次中央目录，之后按包前缀过滤条目，不创建Path对象
+ * - 按LRU淘汰超出容量的句柄，引用计数保证正在使用的句柄在释放后才关闭
+ */
+public class JarFileCache {
+
+    private static final Logger LOGGER = Logger.getLogger(JarFileCache.class);
+
+    private static final JarFileCache SHARED = new JarFileCache(64);
+
+    private final Map<Path, Handle> handles;
+
+    public JarFileCache(int maxSize) {
+        this.handles = new LinkedHashMap<Path, Handle>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Handle> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static JarFileCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * 获取jar句柄，使用完毕后必须close释放
+     * @param jarPath jar文件路径
+     * @return
+     * @throws IOException
+     */
+    public Handle acquire(Path jarPath) throws IOException {
+        Path key = jarPath.toAbsolutePath().normalize();
+        synchronized (this) {
+            Handle handle = handles.get(key);
+            if (handle != null) {
+                handle.refs++;
+                return handle;
+            }
+        }
+        // 在锁外打开，避免读取大jar的中央目录时阻塞其他jar
+        JarFile jarFile = new JarFile(key.toFile(), false);
+        synchronized (this) {
+            Handle handle = handles.get(key);
+            if (handle == null) {
+                handle = new Handle(jarFile);
+                handles.put(key, handle);
+            } else {
+                // 其他线程已经打开
+                closeQuietly(jarFile);
+            }
+            handle.refs++;
+            return handle;
+        }
+    }
+
+    /**
+     * 关闭所有空闲句柄，正在使用的句柄在释放时关闭
+     */
+    public synchronized void clear() {
+        for (Handle handle : handles.values()) {
+            handle.evict();
+        }
+        handles.clear();
+    }
+
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    private static void closeQuietly(JarFile jarFile) {
+        try {
+            jarFile.close();
+        } catch (IOException e) {
+            LOGGER.warn("failed to close " + jarFile.getName(), e);
+        }
+    }
+
+    /**
+     * 引用计数的jar句柄
+     */
+    public class Handle implements Closeable {
+
+        private final JarFile jarFile;
+        private int refs;
+        private boolean evicted;
+
+        private Handle(JarFile jarFile) {
+            this.jarFile = jarFile;
+        }
+
+        public JarFile getJarFile() {
+            return jarFile;
+        }
+
+        /**
+         * 包前缀下的所有文件条目，顺序与中央目录一致
+         * @param prefix cn/henryhe/io/
+         * @return
+         */
+        public List<String> entries(String prefix) {
+            List<String> names = new ArrayList<>();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.startsWith(prefix)) {
+                    names.add(name);
+                }
+            }
+            return names;
+        }
+
+        /**
+         * 惰性遍历包前缀下的文件条目，用于可提前结束的流式扫描
+         * @param prefix cn/henryhe/io/
+         * @return
+         */
+        public Iterator<String> entryIterator(String prefix) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            return new Iterator<String>() {
+                private String next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && entries.hasMoreElements()) {
+                        JarEntry entry = entries.nextElement();
+                        if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                            next = entry.getName();
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String name = next;
+                    next = null;
+                    return name;
+                }
+            };
+        }
+
+        private void evict() {
+            // 调用方持有JarFileCache的锁
+            evicted = true;
+            if (refs == 0) {
+                closeQuietly(jarFile);
+            }
+        }
+
+        /**
+         * 释放引用，每次acquire对应一次close
+         */
+        @Override
+        public void close() {
+            synchronized (JarFileCache.this) {
+                if (refs > 0 && --refs == 0 && evicted) {
+                    closeQuietly(jarFile);
+                }
+            }
+        }
+    }
+}
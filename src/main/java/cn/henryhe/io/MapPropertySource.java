@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变配置来源，创建时复制到基数树中，按前缀查询不需要遍历所有key
+ * 值可以是字符串，也可以是yaml解析出的Integer、Boolean、List等，getProperty时才转为字符串
+ */
+public class MapPropertySource implements PropertySource {
+
+    private final String name;
+    private final PropertyTrie<Object> properties;
+
+    public MapPropertySource(String name, Map<String, ?> properties) {
+        this.name = name;
+        this.properties = PropertyTrie.of(properties);
+    }
+
+    public MapPropertySource(String name, Properties props) {
+        this.name = name;
+        Map<String, Object> properties = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            properties.put(key, props.getProperty(key));
+        }
+        // putAll(yaml)放入的非字符串值
+        for (Map.Entry<Object, Object> entry : props.entrySet()) {
+            if (entry.getKey() instanceof String && entry.getValue() != null && !(entry.getValue() instanceof String)) {
+                properties.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        this.properties = PropertyTrie.of(properties);
+    }
+
+    /**
+     * 当前系统属性（-Dkey=value）的副本
+     * @return
+     */
+    public static MapPropertySource systemProperties() {
+        return new MapPropertySource("systemProperties", System.getProperties());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = properties.get(key);
+        return value == null ? null : PropertyResolver.stringValue(value);
+    }
+
+    @Override
+    public Object getValue(String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public Set<String> keys() {
+        return properties.keySet();
+    }
+
+    @Override
+    public boolean containsPrefix(String prefix) {
+        return properties.containsPrefix(prefix);
+    }
+
+    @Override
+    public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        properties.forEachWithPrefix(prefix, (key, value) -> action.accept(key, PropertyResolver.stringValue(value)));
+    }
+
+    @Override
+    public String toString() {
+        return "MapPropertySource{" + name + "}";
+    }
+}
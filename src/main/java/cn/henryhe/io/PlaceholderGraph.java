@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 占位符的依赖图：值中引用了其他key的key作为节点，引用关系作为边
+ * 用Tarjan算法求强连通分量，大小超过1或者有自环的分量就是循环引用；
+ * 分量按依赖在前的顺序产生，同时算出每个节点的层数：不依赖其他节点的为第0层，其他为依赖的最大层数+1
+ * 同一层的节点互不依赖，可以并行解析
+ */
+final class PlaceholderGraph {
+
+    private PlaceholderGraph() {
+    }
+
+    /**
+     * 按依赖分层，前面的层先解析
+     * @param dependencies key -> 值中引用的key，不在图中的key忽略
+     * @return 每一层的key
+     * @throws IllegalStateException 存在循环引用
+     */
+    static List<List<String>> levels(Map<String, ? extends Collection<String>> dependencies) {
+        int n = dependencies.size();
+        String[] names = dependencies.keySet().toArray(new String[0]);
+        Map<String, Integer> ids = new HashMap<>(n * 4 / 3 + 1);
+        for (int i = 0; i < n; i++) {
+            ids.put(names[i], i);
+        }
+        int[][] edges = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Collection<String> targets = dependencies.get(names[i]);
+            int[] edge = new int[targets.size()];
+            int count = 0;
+            for (String target : targets) {
+                Integer id = ids.get(target);
+                if (id != null) {
+                    edge[count++] = id;
+                }
+            }
+            edges[i] = count == edge.length ? edge : Arrays.copyOf(edge, count);
+        }
+
+        // 迭代实现，依赖链很长时不会栈溢出
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] low = new int[n];
+        int[] next = new int[n];
+        int[] level = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        int sp = 0;
+        int counter = 0;
+        List<List<String>> levels = new ArrayList<>();
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (next[v] < edges[v].length) {
+                    int w = edges[v][next[v]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        calls[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = calls[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != index[v]) {
+                    continue;
+                }
+                if (stack[sp - 1] != v || contains(edges[v], v)) {
+                    throw new IllegalStateException(cycleMessage(cycle(names, edges, stack, sp, v)));
+                }
+                sp--;
+                onStack[v] = false;
+                // 无环时v依赖的节点都已经产生
+                int l = 0;
+                for (int w : edges[v]) {
+                    l = Math.max(l, level[w] + 1);
+                }
+                level[v] = l;
+                while (levels.size() <= l) {
+                    levels.add(new ArrayList<>());
+                }
+                levels.get(l).add(names[v]);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * a -> b -> a
+     */
+    static String cycleMessage(List<String> path) {
+        return "Circular placeholder reference: " + String.join(" -> ", path);
+    }
+
+    /**
+     * 在以v为根的强连通分量中沿边走到重复的节点，得到一个环
+     */
+    private static List<String> cycle(String[] names, int[][] edges, int[] stack, int sp, int v) {
+        boolean[] member = new boolean[names.length];
+        for (int i = sp - 1; i >= 0; i--) {
+            member[stack[i]] = true;
+            if (stack[i] == v) {
+                break;
+            }
+        }
+        Map<Integer, Integer> positions = new HashMap<>();
+        List<String> path = new ArrayList<>();
+        int current = v;
+        while (!positions.containsKey(current)) {
+            positions.put(current, path.size());
+            path.add(names[current]);
+            for (int w : edges[current]) {
+                if (member[w]) {
+                    current = w;
+                    break;
+                }
+            }
+        }
+        List<String> cycle = new ArrayList<>(path.subList(positions.get(current), path.size()));
+        cycle.add(names[current]);
+        return cycle;
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int element : array) {
+            if (element == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
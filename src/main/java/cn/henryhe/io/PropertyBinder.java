@@ -0,0 +1,293 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把前缀下的属性绑定到对象上，每个类型只生成一次绑定计划
+ * - 有无参构造方法：创建对象后调用setXxx
+ * - 没有无参构造方法：调用参数最多的构造方法，参数名来自-parameters编译信息，record取自记录组件，
+ *   两者都没有时无法确定参数名，抛出IllegalArgumentException
+ * 构造方法和setter在计划中保存为MethodHandle，执行时不再反射查找；非public的类同样可以绑定
+ * 支持的属性类型：ConverterRegistry支持的类型、List（元素为ConverterRegistry支持的类型）、嵌套对象
+ */
+final class PropertyBinder {
+
+    private static final ClassValue<BindingPlan> PLANS = new ClassValue<BindingPlan>() {
+        @Override
+        protected BindingPlan computeValue(Class<?> type) {
+            return BindingPlan.create(type);
+        }
+    };
+
+    private PropertyBinder() {
+    }
+
+    static <T> T bind(PropertyResolver resolver, String prefix, Class<T> type) {
+        return type.cast(PLANS.get(type).execute(resolver, prefix));
+    }
+
+    /**
+     * 单个属性：名称、类型、setter（构造方法绑定时为null）
+     */
+    private static final class Property {
+
+        final String name;
+        /**
+         * maxPoolSize -> max-pool-size，与name相同时为null
+         */
+        final String kebabName;
+        final Class<?> type;
+        /**
+         * List属性的元素类型，其他属性为null
+         */
+        final Class<?> elementType;
+        final MethodHandle setter;
+
+        Property(String name, Class<?> type, Type genericType, MethodHandle setter) {
+            this.name = name;
+            String kebab = toKebabCase(name);
+            this.kebabName = kebab.equals(name) ? null : kebab;
+            this.type = type;
+            this.elementType = type == List.class ? elementType(genericType) : null;
+            this.setter = setter;
+        }
+
+        Object value(PropertyResolver resolver, String prefix) {
+            String key = prefix + "." + name;
+            if (elementType != null) {
+                List<?> value = resolver.getList(key, elementType);
+                if (value == null && kebabName != null) {
+                    value = resolver.getList(prefix + "." + kebabName, elementType);
+                }
+                return value;
+            }
+            if (resolver.getConverterRegistry().supports(type)) {
+                Object value = resolver.getProperty(key, type);
+                if (value == null && kebabName != null) {
+                    value = resolver.getProperty(prefix + "." + kebabName, type);
+                }
+                return value;
+            }
+            // 嵌套对象，前缀下没有任何配置时保持null
+            if (resolver.containsPrefix(key + ".")) {
+                return bind(resolver, key, type);
+            }
+            if (kebabName != null && resolver.containsPrefix(prefix + "." + kebabName + ".")) {
+                return bind(resolver, prefix + "." + kebabName, type);
+            }
+            return null;
+        }
+    }
+
+    private static final class BindingPlan {
+
+        private final Class<?> type;
+        /**
+         * 无参构造：()Object；构造方法绑定：(Object[])Object
+         */
+        private final MethodHandle constructor;
+        private final boolean constructorBinding;
+        private final Property[] properties;
+        private final Object[] defaults;
+
+        private BindingPlan(Class<?> type, MethodHandle constructor, boolean constructorBinding, Property[] properties) {
+            this.type = type;
+            this.constructor = constructor;
+            this.constructorBinding = constructorBinding;
+            this.properties = properties;
+            this.defaults = new Object[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                Class<?> propertyType = properties[i].type;
+                // 基本类型的构造参数缺失时使用零值
+                this.defaults[i] = propertyType.isPrimitive() ? Array.get(Array.newInstance(propertyType, 1), 0) : null;
+            }
+        }
+
+        static BindingPlan create(Class<?> type) {
+            try {
+                Constructor<?> noArgs = null;
+                Constructor<?> widest = null;
+                for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                    if (constructor.getParameterCount() == 0) {
+                        noArgs = constructor;
+                    } else if (widest == null || constructor.getParameterCount() > widest.getParameterCount()) {
+                        widest = constructor;
+                    }
+                }
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                if (noArgs != null) {
+                    noArgs.setAccessible(true);
+                    MethodHandle constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+                    return new BindingPlan(type, constructor, false, setterProperties(type, lookup));
+                }
+                if (widest == null) {
+                    throw new IllegalArgumentException("No constructor to bind " + type.getName());
+                }
+                widest.setAccessible(true);
+                String[] names = parameterNames(type, widest);
+                Class<?>[] parameterTypes = widest.getParameterTypes();
+                Type[] genericTypes = widest.getGenericParameterTypes();
+                Property[] properties = new Property[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    // 非静态内部类等情况下泛型参数个数可能不同
+                    Type genericType = genericTypes.length == parameterTypes.length ? genericTypes[i] : parameterTypes[i];
+                    properties[i] = new Property(names[i], parameterTypes[i], genericType, null);
+                }
+                MethodHandle constructor = lookup.unreflectConstructor(widest)
+                        .asType(MethodType.methodType(Object.class, parameterTypes.length == 0 ? new Class<?>[0] : objectTypes(parameterTypes.length)))
+                        .asSpreader(Object[].class, parameterTypes.length);
+                return new BindingPlan(type, constructor, true, properties);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot bind " + type.getName(), e);
+            }
+        }
+
+        private static Property[] setterProperties(Class<?> type, MethodHandles.Lookup lookup) throws IllegalAccessException {
+            List<Property> properties = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    String property = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+                    // 非public类中的public方法同样需要打开访问
+                    method.setAccessible(true);
+                    MethodHandle setter = lookup.unreflect(method)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    properties.add(new Property(property, method.getParameterTypes()[0], method.getGenericParameterTypes()[0], setter));
+                }
+            }
+            return properties.toArray(new Property[0]);
+        }
+
+        private static String[] parameterNames(Class<?> type, Constructor<?> constructor) {
+            Parameter[] parameters = constructor.getParameters();
+            String[] names = new String[parameters.length];
+            if (parameters.length == 0 || parameters[0].isNamePresent()) {
+                for (int i = 0; i < parameters.length; i++) {
+                    names[i] = parameters[i].getName();
+                }
+                return names;
+            }
+            // record的规范构造方法与记录组件一一对应；字段顺序没有保证，不能用来推断参数名
+            Object[] components = recordComponents(type);
+            if (components != null && components.length == parameters.length) {
+                try {
+                    Method getName = components.getClass().getComponentType().getMethod("getName");
+                    Method getType = components.getClass().getComponentType().getMethod("getType");
+                    for (int i = 0; i < components.length; i++) {
+                        if (getType.invoke(components[i]) != parameters[i].getType()) {
+                            names = null;
+                            break;
+                        }
+                        names[i] = (String) getName.invoke(components[i]);
+                    }
+                    if (names != null) {
+                        return names;
+                    }
+                } catch (ReflectiveOperationException e) {
+                    // 按没有参数名处理
+                }
+            }
+            throw new IllegalArgumentException("Cannot resolve constructor parameter names of " + type.getName() + ", compile with -parameters");
+        }
+
+        /**
+         * Class.getRecordComponents（JDK 16+），不是record或者JDK不支持时返回null
+         */
+        private static Object[] recordComponents(Class<?> type) {
+            try {
+                return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        private static Class<?>[] objectTypes(int count) {
+            Class<?>[] types = new Class<?>[count];
+            for (int i = 0; i < count; i++) {
+                types[i] = Object.class;
+            }
+            return types;
+        }
+
+        Object execute(PropertyResolver resolver, String prefix) {
+            try {
+                if (constructorBinding) {
+                    Object[] args = new Object[properties.length];
+                    for (int i = 0; i < properties.length; i++) {
+                        Object value = properties[i].value(resolver, prefix);
+                        args[i] = value == null ? defaults[i] : value;
+                    }
+                    return constructor.invoke(args);
+                }
+                Object target = constructor.invoke();
+                for (Property property : properties) {
+                    Object value = property.value(resolver, prefix);
+                    if (value != null) {
+                        property.setter.invoke(target, value);
+                    }
+                }
+                return target;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to bind '" + prefix + "' to " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * List<Integer> -> Integer，没有泛型信息时按String处理
+     */
+    private static Class<?> elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return (Class<?>) argument;
+            }
+        }
+        return String.class;
+    }
+
+    private static String toKebabCase(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                sb.append('-').append(Character.toLowerCase(c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
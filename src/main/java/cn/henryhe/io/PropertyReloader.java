@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import cn.henryhe.metrics.Metrics;
+import cn.henryhe.metrics.MetricsRegistry;
+import cn.henryhe.metrics.Span;
+import cn.henryhe.utils.ClassPathUtils;
+import cn.henryhe.utils.YamlUtils;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听配置文件（.properties/.yaml/.yml）变化，在后台线程重新解析并发布到PropertyResolver
+ * 多个文件按顺序合并，后面的覆盖前面的；解析失败时保留旧的配置
+ */
+public class PropertyReloader implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(PropertyReloader.class);
+
+    /**
+     * 编辑器保存文件时通常会触发多个事件，合并一段时间内的事件只加载一次
+     */
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final PropertyResolver resolver;
+    private final List<Path> files;
+    private WatchService watchService;
+    private Thread thread;
+
+    public PropertyReloader(PropertyResolver resolver, List<Path> files) {
+        this.resolver = resolver;
+        List<Path> normalized = new ArrayList<>(files.size());
+        for (Path file : files) {
+            normalized.add(file.toAbsolutePath().normalize());
+        }
+        this.files = Collections.unmodifiableList(normalized);
+    }
+
+    /**
+     * 启动监听线程
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> dirs = new HashSet<>();
+        for (Path file : files) {
+            if (dirs.add(file.getParent())) {
+                // 编辑器可能以删除重建的方式保存文件
+                file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+        thread = new Thread(this::watch, "property-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 立即重新加载所有文件
+     * @return 是否加载成功
+     */
+    public boolean reloadNow() {
+        Map<String, Object> properties = new HashMap<>();
+        try {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    parse(file, properties);
+                }
+            }
+            // yaml中的值保持原始类型；resolver已冻结且新配置存在循环引用时抛出异常
+            resolver.reload(new MapPropertySource(PropertyResolver.APPLICATION_SOURCE, properties));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("failed to reload " + files + ", keep current config", e);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (thread != null) {
+            thread.interrupt();
+            watchService.close();
+            thread = null;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = collect(key);
+                // 合并后续的事件
+                while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= collect(key);
+                }
+                if (changed) {
+                    reloadNow();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止监听
+        }
+    }
+
+    private boolean collect(WatchKey key) {
+        boolean changed = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (files.contains(dir.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private static void parse(Path file, Map<String, Object> target) throws IOException {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.CONFIG_SOURCE);
+        int before = target.size();
+        String name = file.getFileName().toString();
+        if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+            try (InputStream input = Files.newInputStream(file)) {
+                YamlUtils.loadYaml(input, target);
+            }
+        } else {
+            // 与初次加载（ClassPathUtils.readPropertiesByName）相同的解码
+            Properties props = new Properties();
+            try (InputStream input = Files.newInputStream(file)) {
+                ClassPathUtils.loadProperties(input, props);
+            }
+            for (String key : props.stringPropertyNames()) {
+                target.put(key, props.getProperty(key));
+            }
+        }
+        // 覆盖已有的key不计入
+        MetricsRegistry.get().configParsed(file.toString(), span, target.size() - before);
+    }
+}
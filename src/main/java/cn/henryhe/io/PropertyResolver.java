@@ -24,14 +24,16 @@
 
 package cn.henryhe.io;
 
+import cn.henryhe.metrics.MetricsRegistry;
 import jakarta.annotation.Nullable;
 import org.apache.log4j.Logger;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZonedDateTime;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -41,97 +43,286 @@ public class PropertyResolver {
 
     private static final Logger LOGGER = Logger.getLogger(PropertyResolver.class);
 
-    private static Map<Class<?>, Function<String, Object>> converters = new HashMap<>();
+    /**
+     * 缓存中表示key不存在
+     */
+    private static final Object MISSING = new Object();
 
-    static {
-        // 初始化转换器
-        converters.put(Integer.class, (t) -> Integer.parseInt(t));
-        // String类型:
-        converters.put(String.class, s -> s);
-        // boolean类型:
-        converters.put(boolean.class, s -> Boolean.parseBoolean(s));
-        converters.put(Boolean.class, s -> Boolean.valueOf(s));
-        // int类型:
-        converters.put(int.class, s -> Integer.parseInt(s));
-        // 其他基本类型...
-        // Date/Time类型:
-        converters.put(LocalDate.class, s -> LocalDate.parse(s));
-        converters.put(LocalTime.class, s -> LocalTime.parse(s));
-        converters.put(LocalDateTime.class, s -> LocalDateTime.parse(s));
-        converters.put(ZonedDateTime.class, s -> ZonedDateTime.parse(s));
-    }
+    /**
+     * 缓存中表示转换结果为null，ConcurrentHashMap不能保存null
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * getDataSize的缓存标识
+     */
+    private static final Object DATA_SIZE = new Object();
+
+    /**
+     * getList的缓存标识，每个元素类型一个
+     */
+    private static final ClassValue<Object> LIST_TYPES = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            return new Object();
+        }
+    };
+
+    /**
+     * 冻结时同一层超过该数量的占位符并行解析
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * 每个快照最多缓存的不存在的key，查询动态拼接或者外部传入的key时缓存不会无限增长
+     */
+    static final int MAX_CACHED_MISSES = 1024;
 
-    Map<String, String> properties = new HashMap<>();
+    /**
+     * 当前配置快照，整体替换，读取方不加锁
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * freeze之后，重新加载的快照在发布前同样冻结
+     */
+    private volatile boolean frozen;
+
+    /**
+     * 编译后的表达式缓存，key为表达式原文，与快照无关
+     */
+    private final Map<String, PropertyTemplate> templates = new ConcurrentHashMap<>();
+
+    private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ConverterRegistry converters;
 
     /**
-     * 提供注册转换器
+     * 提供注册转换器：注册到全局，只对之后创建的PropertyResolver生效
      * @param clazz
      * @param function
+     * @deprecated 使用 {@link #getConverterRegistry()} 为单个resolver注册
      */
+    @Deprecated
     public static void registerConverter(Class<?> clazz, Function<String, Object> function) {
         if (clazz != null && function != null) {
-            converters.put(clazz, function);
+            ConverterRegistry.GLOBAL.put(clazz, function);
         }
     }
 
+    /**
+     * reload(Properties)替换的配置来源名称
+     */
+    public static final String APPLICATION_SOURCE = "application";
+
     public PropertyResolver(Properties props) {
-        // load env key-value
-        this.properties.putAll(System.getenv());
-        Set<String> names = props.stringPropertyNames();
-        for (String name : names) {
-            this.properties.put(name, props.getProperty(name));
+        this(props, new ConverterRegistry());
+    }
+
+    /**
+     * 配置文件优先于环境变量
+     * @param props
+     * @param converters
+     */
+    public PropertyResolver(Properties props, ConverterRegistry converters) {
+        this(Arrays.asList(new MapPropertySource(APPLICATION_SOURCE, props), EnvironmentPropertySource.shared()), converters);
+    }
+
+    /**
+     * 按顺序查找的多层配置来源，前面的优先
+     * @param sources
+     * @param converters
+     */
+    public PropertyResolver(List<? extends PropertySource> sources, ConverterRegistry converters) {
+        this.converters = converters;
+        this.snapshot = new Snapshot(sources.toArray(new PropertySource[0]));
+    }
+
+    /**
+     * 当前resolver的转换器，第一次类型转换之后冻结
+     * @return
+     */
+    public ConverterRegistry getConverterRegistry() {
+        return converters;
+    }
+
+    /**
+     * 当前的配置来源，按优先级排列
+     * @return
+     */
+    public List<PropertySource> getPropertySources() {
+        return Collections.unmodifiableList(Arrays.asList(this.snapshot.sources));
+    }
+
+    /**
+     * 重新加载配置：替换名为application的来源（不存在时放在最前面），其他来源保持不变
+     * @param props
+     */
+    public void reload(Properties props) {
+        reload(new MapPropertySource(APPLICATION_SOURCE, props));
+    }
+
+    /**
+     * 替换同名的配置来源，不存在时放在最前面
+     * @param replacement
+     */
+    public synchronized void reload(PropertySource replacement) {
+        List<PropertySource> sources = new ArrayList<>(Arrays.asList(this.snapshot.sources));
+        int index = -1;
+        for (int i = 0; i < sources.size(); i++) {
+            if (replacement.getName().equals(sources.get(i).getName())) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            sources.add(0, replacement);
+        } else {
+            sources.set(index, replacement);
+        }
+        reload(sources);
+    }
+
+    /**
+     * 替换全部配置来源：构建新的不可变快照并整体发布，只通知生效值发生变化的key，
+     * 包括通过占位符直接或间接引用了这些key的key
+     * @param sources
+     */
+    public synchronized void reload(List<? extends PropertySource> sources) {
+        Snapshot current = this.snapshot;
+        Snapshot next = new Snapshot(sources.toArray(new PropertySource[0]));
+        if (frozen) {
+            // 存在循环引用时抛出异常，保留当前配置
+            next.freeze();
+        }
+        // 生效值只可能在被替换的来源中的key上发生变化，层数变化时比较所有来源
+        Set<String> candidates = new HashSet<>();
+        boolean sameLayout = current.sources.length == next.sources.length;
+        for (int i = 0; i < Math.max(current.sources.length, next.sources.length); i++) {
+            PropertySource previous = i < current.sources.length ? current.sources[i] : null;
+            PropertySource replacement = i < next.sources.length ? next.sources[i] : null;
+            if (!sameLayout || previous != replacement) {
+                if (previous != null) {
+                    candidates.addAll(previous.keys());
+                }
+                if (replacement != null) {
+                    candidates.addAll(replacement.keys());
+                }
+            }
+        }
+        Set<String> changedKeys = new HashSet<>();
+        for (String key : candidates) {
+            // 内部比较，不计入查找统计
+            if (!Objects.equals(current.find(key), next.find(key))) {
+                changedKeys.add(key);
+            }
+        }
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        changedKeys = next.withDependents(changedKeys);
+        next.inherit(current, changedKeys);
+        this.snapshot = next;
+        Set<String> keys = Collections.unmodifiableSet(changedKeys);
+        for (ConfigChangeListener listener : listeners) {
+            try {
+                listener.onChange(keys);
+            } catch (RuntimeException e) {
+                LOGGER.error("config change listener failed", e);
+            }
         }
     }
 
+    /**
+     * 一次性解析所有配置来源中的key：按占位符的依赖关系排序后逐层解析，互不依赖的占位符并行解析，
+     * 结果保存在不可变的map中，之后getProperty只是一次map查找，不再解析表达式。
+     * 之后reload的配置同样在发布前冻结。
+     * 引用了不存在的key且没有默认值的值在读取时才抛出NullPointerException，与未冻结时一致
+     * @throws IllegalStateException 存在循环引用，例如 a=${b}、b=${a}
+     */
+    public synchronized void freeze() {
+        this.snapshot.freeze();
+        this.frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public void addChangeListener(ConfigChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeChangeListener(ConfigChangeListener listener) {
+        listeners.remove(listener);
+    }
+
     public boolean containsProperty(String name) {
-        return this.properties.containsKey(name);
+        return this.snapshot.value(name) != null;
     }
 
     /**
-     * string类型 - 获取value
-     * - ${IP:0.0.0.0}:${PORT:3306} - 不支持此种表达 spring使用spring-expression来支持这种复杂解析额。
-     * - ${IP}
-     * - ${IP.IPV4:0.0.0.0}
-     * - IP
-     * - IP.IPV4
-     * - ${app.title:APP_NAME:xxxx}
-     * @param name
+     * 是否存在以prefix开头的key
+     * @param prefix
      * @return
      */
-    @Nullable
-    public String getProperty(String name) {
-        if (name == null) return null;
-        PropertyExpr propertyExpr = parsePropertyExpr(name);
-        // 带有$
-        if (propertyExpr != null) {
-            if (propertyExpr.getDefaultValue() != null) {
-                return getproperty(propertyExpr.getKey(), propertyExpr.getDefaultValue());
-            } else {
-                return getRequiredProperty(propertyExpr.getKey());
+    public boolean containsPrefix(String prefix) {
+        for (PropertySource source : this.snapshot.sources) {
+            if (source.containsPrefix(prefix)) {
+                return true;
             }
         }
-        // 不带$
-        String value = this.properties.get(name);
-        if (value != null) {
-            // 递归查询一下
-            return parseValue(value);
-        }
-        return value;
+        return false;
     }
 
-    private String getRequiredProperty(String key) {
-        String value = getProperty(key);
-        return Objects.requireNonNull(value, "Property '" + key + "' not found");
+    /**
+     * 以prefix开头的所有key及解析后的值，按key排序；多个来源中存在同一个key时取优先级高的
+     * 例如 getPropertiesWithPrefix("datasource.")
+     * @param prefix
+     * @return
+     */
+    public SortedMap<String, String> getPropertiesWithPrefix(String prefix) {
+        Snapshot snapshot = this.snapshot;
+        SortedMap<String, String> result = new TreeMap<>();
+        for (PropertySource source : snapshot.sources) {
+            source.forEachWithPrefix(prefix, (key, value) -> {
+                if (!result.containsKey(key)) {
+                    result.put(key, snapshot.getProperty(key));
+                }
+            });
+        }
+        return result;
     }
 
-    private <T> T getRequiredProperty(String key, Class<T> targetType) {
-        T value = getProperty(key, targetType);
-        return Objects.requireNonNull(value, "Property '" + key + "' not found");
+    /**
+     * 把prefix下的属性绑定到新建的对象：db.url -> setUrl / 构造参数url，也接受db.max-pool-size形式的key
+     * 绑定计划按类型缓存，重新加载配置后再次调用只执行一次计划
+     * @param prefix
+     * @param type
+     * @return
+     * @param <T>
+     */
+    public <T> T bind(String prefix, Class<T> type) {
+        return PropertyBinder.bind(this, prefix, type);
     }
 
-    private String getproperty(String key, String defaultValue) {
-        String value = getProperty(key);
-        return value == null ? parseValue(defaultValue) : value;
+    /**
+     * string类型 - 获取value，表达式编译后按字符串缓存
+     * - ${IP}
+     * - ${IP.IPV4:0.0.0.0}
+     * - ${IP:0.0.0.0}:${PORT:3306} - 组合表达式
+     * - ${app.title:${APP_NAME:xxxx}} - 嵌套默认值
+     * - IP
+     * - IP.IPV4
+     * - ${app.title:APP_NAME:xxxx} - 多段默认值取最后一段
+     * @param name
+     * @return
+     */
+    @Nullable
+    public String getProperty(String name) {
+        if (name == null) return null;
+        // 一次求值只使用同一个快照
+        return this.snapshot.getProperty(name);
     }
 
     /**
@@ -142,10 +333,205 @@ public class PropertyResolver {
      * @param <T>
      */
     public <T> T getProperty(String key, Class<T> targetType) {
-        String value = getProperty(key);
-        if (value == null) return null;
+        // parser为null时按类型查找转换器
+        Object value = this.snapshot.typed(key, targetType, null);
+        return value == MISSING ? null : (T) value;
+    }
+
+    /**
+     * 列表：yaml中的列表直接转换元素，字符串按逗号分隔，例如 hosts=a,b,c
+     * key不存在时返回null
+     * @param key
+     * @param elementType
+     * @return 不可修改的列表
+     * @param <T>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(String key, Class<T> elementType) {
+        Object value = this.snapshot.list(key, elementType);
+        return value == MISSING ? null : (List<T>) value;
+    }
 
-        return convert(targetType, value);
+    /**
+     * key不存在时返回Optional.empty()
+     */
+    public <T> Optional<T> getOptionalProperty(String key, Class<T> targetType) {
+        return Optional.ofNullable(getProperty(key, targetType));
+    }
+
+    /**
+     * 基本类型读取：转换结果按key缓存在快照中，重复读取只是一次map查找，不会重复解析和装箱
+     * key不存在时抛出NullPointerException
+     */
+    public int getInt(String key) {
+        return (Integer) required(key, this.snapshot.typed(key, Integer.class, Integer::parseInt));
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = this.snapshot.typed(key, Integer.class, Integer::parseInt);
+        return value == MISSING ? defaultValue : (Integer) value;
+    }
+
+    public long getLong(String key) {
+        return (Long) required(key, this.snapshot.typed(key, Long.class, Long::parseLong));
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = this.snapshot.typed(key, Long.class, Long::parseLong);
+        return value == MISSING ? defaultValue : (Long) value;
+    }
+
+    public double getDouble(String key) {
+        return (Double) required(key, this.snapshot.typed(key, Double.class, Double::parseDouble));
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Object value = this.snapshot.typed(key, Double.class, Double::parseDouble);
+        return value == MISSING ? defaultValue : (Double) value;
+    }
+
+    public boolean getBoolean(String key) {
+        return (Boolean) required(key, this.snapshot.typed(key, Boolean.class, Boolean::valueOf));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = this.snapshot.typed(key, Boolean.class, Boolean::valueOf);
+        return value == MISSING ? defaultValue : (Boolean) value;
+    }
+
+    /**
+     * 时长：PT30S、500ms、30s、5m、2h、1d，纯数字为毫秒
+     */
+    public Duration getDuration(String key) {
+        return (Duration) required(key, this.snapshot.typed(key, Duration.class, PropertyResolver::parseDuration));
+    }
+
+    public Duration getDuration(String key, Duration defaultValue) {
+        Object value = this.snapshot.typed(key, Duration.class, PropertyResolver::parseDuration);
+        return value == MISSING ? defaultValue : (Duration) value;
+    }
+
+    /**
+     * 容量，返回字节数：512B、10KB、5MB、1GB、1TB，纯数字为字节
+     */
+    public long getDataSize(String key) {
+        return (Long) required(key, this.snapshot.typed(key, DATA_SIZE, PropertyResolver::parseDataSize));
+    }
+
+    public long getDataSize(String key, long defaultValue) {
+        Object value = this.snapshot.typed(key, DATA_SIZE, PropertyResolver::parseDataSize);
+        return value == MISSING ? defaultValue : (Long) value;
+    }
+
+    /**
+     * 非字符串的原始值转为字符串，列表按逗号连接
+     */
+    static String stringValue(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof List) {
+            StringBuilder sb = new StringBuilder();
+            for (Object element : (List<?>) value) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(element == null ? "" : stringValue(element));
+            }
+            return sb.toString();
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 不经过字符串直接使用原始值：类型相同，或者数字之间无损转换；无法直接使用时返回null
+     */
+    static Object adapt(Object value, Class<?> type) {
+        Class<?> boxed = type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            long number = ((Number) value).longValue();
+            if (boxed == Long.class) {
+                return number;
+            }
+            if (boxed == Integer.class && number == (int) number) {
+                return (int) number;
+            }
+            if (boxed == Double.class) {
+                return (double) number;
+            }
+        }
+        return null;
+    }
+
+    private static Object required(String key, Object value) {
+        if (value == MISSING) {
+            throw new NullPointerException("Property '" + key + "' not found");
+        }
+        return value;
+    }
+
+    static Duration parseDuration(String value) {
+        String s = value.trim();
+        if (s.startsWith("P") || s.startsWith("p") || s.startsWith("-P")) {
+            return Duration.parse(s);
+        }
+        String lower = s.toLowerCase(Locale.ROOT);
+        if (lower.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2).trim()));
+        }
+        if (lower.endsWith("ns")) {
+            return Duration.ofNanos(Long.parseLong(lower.substring(0, lower.length() - 2).trim()));
+        }
+        long amount;
+        switch (lower.charAt(lower.length() - 1)) {
+            case 's':
+                amount = Long.parseLong(lower.substring(0, lower.length() - 1).trim());
+                return Duration.ofSeconds(amount);
+            case 'm':
+                amount = Long.parseLong(lower.substring(0, lower.length() - 1).trim());
+                return Duration.ofMinutes(amount);
+            case 'h':
+                amount = Long.parseLong(lower.substring(0, lower.length() - 1).trim());
+                return Duration.ofHours(amount);
+            case 'd':
+                amount = Long.parseLong(lower.substring(0, lower.length() - 1).trim());
+                return Duration.ofDays(amount);
+            default:
+                return Duration.ofMillis(Long.parseLong(lower));
+        }
+    }
+
+    static long parseDataSize(String value) {
+        String s = value.trim().toUpperCase(Locale.ROOT);
+        if (s.endsWith("B")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        long unit = 1;
+        if (!s.isEmpty()) {
+            switch (s.charAt(s.length() - 1)) {
+                case 'K':
+                    unit = 1L << 10;
+                    break;
+                case 'M':
+                    unit = 1L << 20;
+                    break;
+                case 'G':
+                    unit = 1L << 30;
+                    break;
+                case 'T':
+                    unit = 1L << 40;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (unit != 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return Math.multiplyExact(Long.parseLong(s.trim()), unit);
     }
 
     /**
@@ -156,35 +542,495 @@ public class PropertyResolver {
      * @param <T>
      */
     private <T> T convert(Class<T> clazz, String value) {
-        Function<String, Object> converter = converters.get(clazz);
-        if (converter == null) {
-            throw new IllformedLocaleException("Unsupported value type" + clazz.getName());
+        return converters.convert(clazz, value);
+    }
+
+    Snapshot snapshot() {
+        return this.snapshot;
+    }
+
+    PropertyTemplate template(String expr) {
+        PropertyTemplate template = templates.get(expr);
+        if (template == null) {
+            template = PropertyTemplate.compile(expr);
+            PropertyTemplate existing = templates.putIfAbsent(expr, template);
+            if (existing != null) {
+                template = existing;
+            }
         }
-        return (T) converter.apply(value);
+        return template;
     }
 
-    private String parseValue(String value) {
-        if (value == null) return null;
-        while (value.indexOf(":") != -1) {
-            value = value.substring(value.indexOf(":") + 1, value.length());
+    /**
+     * 不可变的配置快照
+     */
+    final class Snapshot {
+
+        final PropertySource[] sources;
+
+        /**
+         * 原始值的查找结果：key -> 值或MISSING，存在的key全部缓存，不存在的key最多缓存MAX_CACHED_MISSES个
+         */
+        private final Map<String, Object> lookups = new ConcurrentHashMap<>();
+
+        /**
+         * 已经缓存的不存在的key的数量，包括类型转换结果中的MISSING
+         */
+        private final AtomicInteger cachedMisses = new AtomicInteger();
+
+        /**
+         * 类型转换结果的缓存：类型标识 -> (key -> 值或MISSING)
+         */
+        private final Map<Object, Map<String, Object>> converted = new ConcurrentHashMap<>();
+
+        /**
+         * freeze的结果：key -> 解析后的字符串或Unresolvable，未冻结时为null
+         */
+        private volatile Map<String, Object> resolved;
+
+        Snapshot(PropertySource[] sources) {
+            this.sources = sources;
+        }
+
+        /**
+         * 按优先级查找原始类型的值，不解析占位符
+         */
+        Object value(String key) {
+            Object value = find(key);
+            MetricsRegistry.get().propertyLookup(value != null);
+            return value;
+        }
+
+        /**
+         * 与value相同，但不记录查找统计
+         */
+        Object find(String key) {
+            Object value = lookups.get(key);
+            if (value == null) {
+                value = MISSING;
+                for (PropertySource source : sources) {
+                    Object found = source.getValue(key);
+                    if (found != null) {
+                        value = found;
+                        break;
+                    }
+                }
+                if (value != MISSING || cacheMiss()) {
+                    lookups.put(key, value);
+                }
+            }
+            return value == MISSING ? null : value;
+        }
+
+        /**
+         * 是否还可以缓存一个不存在的key
+         */
+        private boolean cacheMiss() {
+            return cachedMisses.get() < MAX_CACHED_MISSES && cachedMisses.incrementAndGet() <= MAX_CACHED_MISSES;
+        }
+
+        PropertyTemplate template(String expr) {
+            return PropertyResolver.this.template(expr);
+        }
+
+        /**
+         * 按优先级查找原始值的字符串形式，不解析占位符
+         */
+        String raw(String key) {
+            Object value = value(key);
+            return value == null ? null : stringValue(value);
+        }
+
+        /**
+         * 读取转换后的值，key不存在时返回MISSING；转换失败的异常直接抛出，不缓存
+         * yaml中已经解析过的数字、布尔值直接使用，不再转为字符串重新解析
+         */
+        Object typed(String key, Object type, Function<String, ?> parser) {
+            Map<String, Object> memo = memo(type);
+            Object value = memo.get(key);
+            if (value == NULL) {
+                return null;
+            }
+            if (value == null) {
+                Object adapted = null;
+                if (type instanceof Class && key.indexOf("${") < 0) {
+                    Object original = value(key);
+                    if (original != null && !(original instanceof String)) {
+                        adapted = adapt(original, (Class<?>) type);
+                    }
+                }
+                if (adapted != null) {
+                    value = adapted;
+                } else {
+                    String raw = getProperty(key);
+                    if (raw == null) {
+                        value = MISSING;
+                    } else {
+                        value = parser != null ? parser.apply(raw) : convert((Class<?>) type, raw);
+                    }
+                }
+                if (value != MISSING || cacheMiss()) {
+                    memo.put(key, value == null ? NULL : value);
+                }
+            }
+            return value;
+        }
+
+        /**
+         * 读取列表，key不存在时返回MISSING
+         */
+        Object list(String key, Class<?> elementType) {
+            Map<String, Object> memo = memo(LIST_TYPES.get(elementType));
+            Object value = memo.get(key);
+            if (value == NULL) {
+                return null;
+            }
+            if (value == null) {
+                Object original = key.indexOf("${") < 0 ? value(key) : null;
+                List<Object> list = new ArrayList<>();
+                if (original instanceof List) {
+                    for (Object element : (List<?>) original) {
+                        list.add(element(element, elementType));
+                    }
+                } else {
+                    String raw = getProperty(key);
+                    if (raw == null) {
+                        if (cacheMiss()) {
+                            memo.put(key, MISSING);
+                        }
+                        return MISSING;
+                    }
+                    if (!raw.trim().isEmpty()) {
+                        for (String element : raw.split(",")) {
+                            list.add(element(element.trim(), elementType));
+                        }
+                    }
+                }
+                value = Collections.unmodifiableList(list);
+                memo.put(key, value == null ? NULL : value);
+            }
+            return value;
+        }
+
+        private Object element(Object element, Class<?> elementType) {
+            if (element == null) {
+                return null;
+            }
+            Object adapted = adapt(element, elementType);
+            return adapted != null ? adapted : convert(elementType, resolveValue(stringValue(element)));
+        }
+
+        private Map<String, Object> memo(Object type) {
+            Map<String, Object> memo = converted.get(type);
+            if (memo == null) {
+                memo = new ConcurrentHashMap<>();
+                Map<String, Object> existing = converted.putIfAbsent(type, memo);
+                if (existing != null) {
+                    memo = existing;
+                }
+            }
+            return memo;
+        }
+
+        /**
+         * 加上值中直接或间接引用了changed中的key的key，例如host变化时url=jdbc://${host}也算变化
+         */
+        Set<String> withDependents(Set<String> changed) {
+            Set<String> keys = new HashSet<>();
+            for (PropertySource source : sources) {
+                keys.addAll(source.keys());
+            }
+            // 被引用的key -> 引用它的key
+            Map<String, List<String>> dependents = new HashMap<>();
+            for (String key : keys) {
+                Object value = find(key);
+                if (value == null) {
+                    continue;
+                }
+                String raw = stringValue(value);
+                if (raw.indexOf("${") < 0) {
+                    continue;
+                }
+                List<String> referenced = new ArrayList<>(2);
+                template(raw).collectKeys(k -> find(k) != null, referenced);
+                for (String ref : referenced) {
+                    dependents.computeIfAbsent(ref, k -> new ArrayList<>(2)).add(key);
+                }
+            }
+            if (dependents.isEmpty()) {
+                return changed;
+            }
+            Set<String> result = new HashSet<>(changed);
+            Deque<String> queue = new ArrayDeque<>(changed);
+            while (!queue.isEmpty()) {
+                for (String dependent : dependents.getOrDefault(queue.poll(), Collections.emptyList())) {
+                    if (result.add(dependent)) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 从旧快照继承未变化的转换结果；含占位符的值可能依赖其他key，不继承
+         */
+        void inherit(Snapshot previous, Set<String> changedKeys) {
+            for (Map.Entry<Object, Map<String, Object>> entry : previous.converted.entrySet()) {
+                Map<String, Object> memo = new ConcurrentHashMap<>();
+                for (Map.Entry<String, Object> value : entry.getValue().entrySet()) {
+                    String key = value.getKey();
+                    // 内部比较，不计入查找统计
+                    Object original = find(key);
+                    String raw = original == null ? null : stringValue(original);
+                    if (!changedKeys.contains(key) && key.indexOf("${") < 0 && (raw == null || raw.indexOf("${") < 0)) {
+                        memo.put(key, value.getValue());
+                    }
+                }
+                converted.put(entry.getKey(), memo);
+            }
+        }
+
+        String getProperty(String name) {
+            // 不带$
+            if (name.indexOf("${") < 0) {
+                Map<String, Object> resolved = this.resolved;
+                if (resolved != null) {
+                    Object frozen = resolved.get(name);
+                    if (frozen instanceof String) {
+                        MetricsRegistry.get().propertyLookup(true);
+                        return (String) frozen;
+                    }
+                    if (frozen != null) {
+                        throw ((Unresolvable) frozen).exception();
+                    }
+                    // 冻结时不存在的key，或者环境变量的宽松名称
+                }
+                String value = raw(name);
+                if (value == null || value.indexOf("${") < 0) {
+                    return value;
+                }
+                // 值中的占位符同样需要解析
+                return evaluate(template(value), name);
+            }
+            // 带有$
+            return evaluate(template(name), null);
+        }
+
+        private String resolveValue(String value) {
+            if (value.indexOf("${") < 0) {
+                return value;
+            }
+            return evaluate(template(value), null);
+        }
+
+        String evaluate(PropertyTemplate template) {
+            return evaluate(template, null);
+        }
+
+        /**
+         * 对包含占位符的表达式求值，使用当前线程复用的上下文记录嵌套深度
+         * @param key 表达式是该key的值，用于检测循环引用，没有时为null
+         */
+        private String evaluate(PropertyTemplate template, String key) {
+            if (template.isLiteral()) {
+                return template.resolve(null);
+            }
+            Evaluation evaluation = Evaluation.acquire(this, resolved, true);
+            try {
+                if (key != null) {
+                    evaluation.enter(key);
+                }
+                String value = template.resolve(evaluation);
+                MetricsRegistry.get().placeholderResolved(evaluation.maxDepth);
+                return value;
+            } finally {
+                evaluation.release();
+            }
+        }
+
+        /**
+         * 解析所有key，见PropertyResolver.freeze
+         */
+        void freeze() {
+            if (resolved != null) {
+                return;
+            }
+            Set<String> keys = new HashSet<>();
+            for (PropertySource source : sources) {
+                keys.addAll(source.keys());
+            }
+            Map<String, Object> values = new ConcurrentHashMap<>(keys.size() * 4 / 3 + 1);
+            Map<String, PropertyTemplate> pending = new HashMap<>();
+            for (String key : keys) {
+                Object value = find(key);
+                if (value == null) {
+                    continue;
+                }
+                String raw = stringValue(value);
+                if (raw.indexOf("${") < 0) {
+                    values.put(key, raw);
+                } else {
+                    pending.put(key, template(raw));
+                }
+            }
+            Map<String, List<String>> dependencies = new HashMap<>(pending.size() * 4 / 3 + 1);
+            for (Map.Entry<String, PropertyTemplate> entry : pending.entrySet()) {
+                List<String> referenced = new ArrayList<>(2);
+                entry.getValue().collectKeys(k -> find(k) != null, referenced);
+                dependencies.put(entry.getKey(), referenced);
+            }
+            for (List<String> level : PlaceholderGraph.levels(dependencies)) {
+                (level.size() >= PARALLEL_THRESHOLD ? level.parallelStream() : level.stream()).forEach(key -> {
+                    Evaluation evaluation = Evaluation.acquire(this, values, false);
+                    Object value;
+                    try {
+                        evaluation.enter(key);
+                        value = pending.get(key).resolve(evaluation);
+                    } catch (NullPointerException e) {
+                        value = new Unresolvable(e.getMessage());
+                    } finally {
+                        evaluation.release();
+                    }
+                    values.put(key, value);
+                });
+            }
+            resolved = Collections.unmodifiableMap(new HashMap<>(values));
         }
-        return value;
     }
 
-    private PropertyExpr parsePropertyExpr(String name) {
-        if (name.startsWith("${") && name.endsWith("}")) {
-            int n = name.indexOf(":");
-            if (n != -1) {
-                // 带有默认值
-                String key = name.substring(2, n);
-                return new PropertyExpr(key, name.substring(n + 1, name.length() - 1));
-            } else {
-                // 不带默认值
-                String key = name.substring(2, name.length() - 1);
-                return new PropertyExpr(key, null);
+    /**
+     * 一次求值的上下文，值中的占位符在同一个上下文中递归解析
+     * 每个线程复用一个，求值过程中除结果字符串外不分配对象
+     * 正在解析其值的key按进入顺序保存在数组中，再次遇到时说明存在循环引用
+     */
+    private static final class Evaluation implements PropertyTemplate.Context {
+
+        private static final ThreadLocal<Evaluation> CURRENT = ThreadLocal.withInitial(Evaluation::new);
+
+        private Snapshot snapshot;
+        /**
+         * 已经解析的值，优先于原始值查找，可以为null
+         */
+        private Map<String, Object> resolved;
+        /**
+         * 是否记录查找统计，freeze中的内部解析不记录
+         */
+        private boolean counted;
+        private String[] resolving = new String[8];
+        private int size;
+        private int depth;
+        private int maxDepth;
+
+        /**
+         * 取得当前线程的上下文，用完后调用release；正在使用时（例如转换器中再次求值）新建一个
+         */
+        static Evaluation acquire(Snapshot snapshot, Map<String, Object> resolved, boolean counted) {
+            Evaluation evaluation = CURRENT.get();
+            if (evaluation.snapshot != null) {
+                evaluation = new Evaluation();
+            }
+            evaluation.snapshot = snapshot;
+            evaluation.resolved = resolved;
+            evaluation.counted = counted;
+            return evaluation;
+        }
+
+        /**
+         * 清空状态，不再引用快照
+         */
+        void release() {
+            Arrays.fill(resolving, 0, size, null);
+            snapshot = null;
+            resolved = null;
+            size = 0;
+            depth = 0;
+            maxDepth = 0;
+        }
+
+        void enter(String key) {
+            for (int i = 0; i < size; i++) {
+                if (resolving[i].equals(key)) {
+                    List<String> path = new ArrayList<>(Arrays.asList(resolving).subList(i, size));
+                    path.add(key);
+                    throw new IllegalStateException(PlaceholderGraph.cycleMessage(path));
+                }
+            }
+            if (size == resolving.length) {
+                resolving = Arrays.copyOf(resolving, size * 2);
+            }
+            resolving[size++] = key;
+        }
+
+        private void exit() {
+            resolving[--size] = null;
+        }
+
+        /**
+         * 占位符求值：key存在时解析其值，否则使用默认值，都没有时报错
+         */
+        @Override
+        public String resolvePlaceholder(String key, PropertyTemplate defaultValue) {
+            if (++depth > maxDepth) {
+                maxDepth = depth;
+            }
+            try {
+                String value = lookup(key);
+                if (value != null) {
+                    return value;
+                }
+                if (defaultValue == null) {
+                    throw new NullPointerException("Property '" + key + "' not found");
+                }
+                return defaultValue.resolve(this);
+            } finally {
+                depth--;
+            }
+        }
+
+        private String lookup(String key) {
+            if (key.indexOf("${") >= 0) {
+                return snapshot.template(key).resolve(this);
+            }
+            if (resolved != null) {
+                Object value = resolved.get(key);
+                if (value instanceof String) {
+                    if (counted) {
+                        MetricsRegistry.get().propertyLookup(true);
+                    }
+                    return (String) value;
+                }
+                if (value != null) {
+                    throw ((Unresolvable) value).exception();
+                }
+            }
+            Object original = counted ? snapshot.value(key) : snapshot.find(key);
+            String value = original == null ? null : stringValue(original);
+            if (value == null || value.indexOf("${") < 0) {
+                return value;
+            }
+            enter(key);
+            try {
+                return snapshot.template(value).resolve(this);
+            } finally {
+                exit();
             }
         }
-        return null;
     }
 
+    /**
+     * 冻结时无法解析的值（引用了不存在的key且没有默认值），读取时抛出与未冻结时相同的异常
+     */
+    private static final class Unresolvable {
+
+        private final String message;
+
+        Unresolvable(String message) {
+            this.message = message;
+        }
+
+        NullPointerException exception() {
+            return new NullPointerException(message);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 一层配置来源，例如application.properties、application.yml、环境变量、系统属性
+ * PropertyResolver按顺序查找，前面的来源优先
+ */
+public interface PropertySource {
+
+    String getName();
+
+    /**
+     * @param key
+     * @return key不存在时返回null
+     */
+    String getProperty(String key);
+
+    /**
+     * 原始类型的值：yaml中的数字、布尔值、列表保持解析后的类型，其他来源默认为字符串
+     * @param key
+     * @return key不存在时返回null
+     */
+    default Object getValue(String key) {
+        return getProperty(key);
+    }
+
+    /**
+     * 该来源中所有可以查到的key
+     * @return
+     */
+    Set<String> keys();
+
+    /**
+     * 是否存在以prefix开头的key，默认遍历所有key
+     * @param prefix
+     * @return
+     */
+    default boolean containsPrefix(String prefix) {
+        for (String key : keys()) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 遍历以prefix开头的key和原始值，默认遍历所有key
+     * @param prefix
+     * @param action
+     */
+    default void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+        for (String key : keys()) {
+            if (key.startsWith(prefix)) {
+                action.accept(key, getProperty(key));
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 编译后的属性表达式，不可变，可以缓存复用
+ * - 文本：abc
+ * - 占位符：${key}、${key:default}，默认值本身也是表达式，可以嵌套 ${a:${b:c}}
+ * - 组合：${IP:0.0.0.0}:${PORT:3306}
+ * - 转义：\: \$ \} 表示字面字符，例如key中包含冒号 ${a\:b}
+ * - 多级默认值 ${app.title:APP_NAME:xxxx} 只有最后一段生效
+ */
+public abstract class PropertyTemplate {
+
+    /**
+     * 针对resolver当前的配置求值，占位符缺失且没有默认值时抛出NullPointerException
+     * @param resolver
+     * @return
+     */
+    public String evaluate(PropertyResolver resolver) {
+        return resolver.snapshot().evaluate(this);
+    }
+
+    /**
+     * 在给定的上下文中求值，嵌套的占位符使用同一个上下文
+     */
+    abstract String resolve(Context context);
+
+    /**
+     * 求值时会查找的key：占位符的key存在时不会用到默认值，默认值中的key不计入
+     * @param present key是否存在
+     * @param keys 收集结果
+     */
+    void collectKeys(Predicate<String> present, Collection<String> keys) {
+    }
+
+    /**
+     * 不包含占位符的纯文本
+     * @return
+     */
+    public boolean isLiteral() {
+        return false;
+    }
+
+    public static PropertyTemplate compile(String expr) {
+        return new Parser(expr).parseTemplate(false);
+    }
+
+    static final class Literal extends PropertyTemplate {
+
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        String resolve(Context context) {
+            return text;
+        }
+
+        @Override
+        public boolean isLiteral() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    static final class Placeholder extends PropertyTemplate {
+
+        private final String key;
+        private final PropertyTemplate defaultValue;
+
+        Placeholder(String key, PropertyTemplate defaultValue) {
+            this.key = key;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String resolve(Context context) {
+            return context.resolvePlaceholder(key, defaultValue);
+        }
+
+        @Override
+        void collectKeys(Predicate<String> present, Collection<String> keys) {
+            keys.add(key);
+            if (defaultValue != null && !present.test(key)) {
+                defaultValue.collectKeys(present, keys);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "${" + key + (defaultValue == null ? "" : ":" + defaultValue) + "}";
+        }
+    }
+
+    static final class Composite extends PropertyTemplate {
+
+        private final PropertyTemplate[] parts;
+        private final int literalLength;
+
+        Composite(PropertyTemplate[] parts) {
+            this.parts = parts;
+            int length = 0;
+            for (PropertyTemplate part : parts) {
+                if (part instanceof Literal) {
+                    length += ((Literal) part).text.length();
+                }
+            }
+            this.literalLength = length;
+        }
+
+        @Override
+        String resolve(Context context) {
+            StringBuilder sb = new StringBuilder(literalLength + 16 * parts.length);
+            for (PropertyTemplate part : parts) {
+                sb.append(part.resolve(context));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        void collectKeys(Predicate<String> present, Collection<String> keys) {
+            for (PropertyTemplate part : parts) {
+                part.collectKeys(present, keys);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (PropertyTemplate part : parts) {
+                sb.append(part);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 占位符的求值上下文
+     */
+    interface Context {
+
+        String resolvePlaceholder(String key, PropertyTemplate defaultValue);
+    }
+
+    /**
+     * 递归下降解析，未闭合的${按普通文本处理
+     */
+    private static final class Parser {
+
+        private final String expr;
+        private int pos;
+
+        Parser(String expr) {
+            this.expr = expr;
+        }
+
+        /**
+         * @param inPlaceholder 在占位符的默认值中，遇到未转义的:或者}时停止
+         */
+        PropertyTemplate parseTemplate(boolean inPlaceholder) {
+            List<PropertyTemplate> parts = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            while (pos < expr.length()) {
+                char c = expr.charAt(pos);
+                if (c == '\\' && pos + 1 < expr.length() && isEscapable(expr.charAt(pos + 1))) {
+                    text.append(expr.charAt(pos + 1));
+                    pos += 2;
+                } else if (inPlaceholder && (c == ':' || c == '}')) {
+                    break;
+                } else if (c == '$' && expr.startsWith("${", pos) && hasClosingBrace(pos + 2)) {
+                    if (text.length() > 0) {
+                        parts.add(new Literal(text.toString()));
+                        text.setLength(0);
+                    }
+                    pos += 2;
+                    parts.add(parsePlaceholder());
+                } else {
+                    text.append(c);
+                    pos++;
+                }
+            }
+            if (text.length() > 0 || parts.isEmpty()) {
+                parts.add(new Literal(text.toString()));
+            }
+            return parts.size() == 1 ? parts.get(0) : new Composite(parts.toArray(new PropertyTemplate[0]));
+        }
+
+        /**
+         * ${ 之后：key[:default]*}
+         */
+        private PropertyTemplate parsePlaceholder() {
+            StringBuilder key = new StringBuilder();
+            while (pos < expr.length()) {
+                char c = expr.charAt(pos);
+                if (c == '\\' && pos + 1 < expr.length() && isEscapable(expr.charAt(pos + 1))) {
+                    key.append(expr.charAt(pos + 1));
+                    pos += 2;
+                } else if (c == ':' || c == '}') {
+                    break;
+                } else {
+                    key.append(c);
+                    pos++;
+                }
+            }
+            PropertyTemplate defaultValue = null;
+            while (pos < expr.length() && expr.charAt(pos) == ':') {
+                pos++;
+                // 与旧实现一致：多段默认值取最后一段
+                defaultValue = parseTemplate(true);
+            }
+            // 跳过 }
+            pos++;
+            return new Placeholder(key.toString().trim(), defaultValue);
+        }
+
+        /**
+         * 从from开始是否存在匹配的}，考虑嵌套和转义
+         */
+        private boolean hasClosingBrace(int from) {
+            int depth = 1;
+            for (int i = from; i < expr.length(); i++) {
+                char c = expr.charAt(i);
+                if (c == '\\' && i + 1 < expr.length() && isEscapable(expr.charAt(i + 1))) {
+                    i++;
+                } else if (c == '$' && expr.startsWith("${", i)) {
+                    depth++;
+                    i++;
+                } else if (c == '}' && --depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isEscapable(char c) {
+            return c == ':' || c == '$' || c == '}';
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.io;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变的基数树（压缩前缀树），保存点分隔的配置key
+ * - 公共前缀只保存一次：datasource.url、datasource.username共享datasource.这一段
+ * - get、containsPrefix为O(key长度)，按前缀遍历为O(前缀长度 + 结果数)
+ * - 遍历顺序为key的字典序
+ */
+final class PropertyTrie<V> extends AbstractMap<String, V> {
+
+    private static final PropertyTrie<?> EMPTY = new PropertyTrie<>(new Node("", null, new char[0], new Node[0]), 0);
+
+    private final Node root;
+    private final int size;
+    private Set<Entry<String, V>> entrySet;
+
+    private PropertyTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PropertyTrie<V> of(Map<String, ? extends V> properties) {
+        if (properties.isEmpty()) {
+            return (PropertyTrie<V>) EMPTY;
+        }
+        String[] keys = properties.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = properties.get(keys[i]);
+        }
+        return new PropertyTrie<>(build(keys, values, 0, keys.length, 0, ""), keys.length);
+    }
+
+    /**
+     * keys[from, to)在depth之前的部分相同
+     */
+    private static Node build(String[] keys, Object[] values, int from, int to, int depth, String label) {
+        Object value = null;
+        if (from < to && keys[from].length() == depth) {
+            value = values[from++];
+        }
+        List<Node> children = new ArrayList<>();
+        int start = from;
+        while (start < to) {
+            char c = keys[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && keys[end].charAt(depth) == c) {
+                end++;
+            }
+            // 已排序，第一个和最后一个的公共前缀就是整组的公共前缀
+            int common = commonPrefix(keys[start], keys[end - 1], depth);
+            children.add(build(keys, values, start, end, common, keys[start].substring(depth, common)));
+            start = end;
+        }
+        char[] firstChars = new char[children.size()];
+        for (int i = 0; i < firstChars.length; i++) {
+            firstChars[i] = children.get(i).label.charAt(0);
+        }
+        return new Node(label, value, firstChars, children.toArray(new Node[0]));
+    }
+
+    private static int commonPrefix(String a, String b, int from) {
+        int max = Math.min(a.length(), b.length());
+        int i = from;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        Node node = root;
+        int pos = 0;
+        while (pos < name.length()) {
+            node = node.child(name.charAt(pos));
+            if (node == null || !name.startsWith(node.label, pos)) {
+                return null;
+            }
+            pos += node.label.length();
+        }
+        return (V) node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否存在以prefix开头的key
+     */
+    boolean containsPrefix(String prefix) {
+        return size > 0 && find(prefix, null) != null;
+    }
+
+    /**
+     * 按字典序遍历以prefix开头的key
+     */
+    void forEachWithPrefix(String prefix, BiConsumer<String, ? super V> action) {
+        StringBuilder path = new StringBuilder(prefix.length() + 32);
+        Node node = find(prefix, path);
+        if (node != null) {
+            visit(node, path, action);
+        }
+    }
+
+    /**
+     * 找到包含prefix的最浅节点，path中写入该节点对应的完整key
+     */
+    private Node find(String prefix, StringBuilder path) {
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            node = node.child(prefix.charAt(pos));
+            if (node == null) {
+                return null;
+            }
+            int remaining = prefix.length() - pos;
+            if (remaining <= node.label.length()) {
+                // 前缀在这条边的中间结束
+                if (!node.label.regionMatches(0, prefix, pos, remaining)) {
+                    return null;
+                }
+            } else if (!prefix.startsWith(node.label, pos)) {
+                return null;
+            }
+            if (path != null) {
+                path.append(node.label);
+            }
+            pos += node.label.length();
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void visit(Node node, StringBuilder path, BiConsumer<String, ? super V> action) {
+        if (node.value != null) {
+            action.accept(path.toString(), (V) node.value);
+        }
+        for (Node child : node.children) {
+            int length = path.length();
+            path.append(child.label);
+            visit(child, path, action);
+            path.setLength(length);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        Set<Entry<String, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    List<Entry<String, V>> entries = new ArrayList<>(size);
+                    forEachWithPrefix("", (String key, V value) -> entries.add(new SimpleImmutableEntry<>(key, value)));
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            this.entrySet = entrySet;
+        }
+        return entrySet;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        forEachWithPrefix("", action::accept);
+    }
+
+    private static final class Node {
+
+        /**
+         * 从父节点到该节点的边
+         */
+        final String label;
+        final Object value;
+        /**
+         * 子节点边的首字符，有序，用于二分查找
+         */
+        final char[] firstChars;
+        final Node[] children;
+
+        Node(String label, Object value, char[] firstChars, Node[] children) {
+            this.label = label;
+            this.value = value;
+            this.firstChars = firstChars;
+            this.children = children;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(firstChars, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+}
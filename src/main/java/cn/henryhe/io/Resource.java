@@ -1,27 +1,269 @@
 package cn.henryhe.io;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 扫描得到的资源
+ * - jar中的资源：path为jar:file:/x.jar!，通过JarFileCache读取，扫描时打开的jar仍在缓存中，不会重复打开
+ * - 目录中的资源：path为file:加绝对路径
+ * 同一个类路径根下的资源共享一个Root，每个资源只保存相对的name（全部是Latin-1字符时保存为byte[]），
+ * getPath、getName在调用时才拼接字符串；size、lastModified在第一次调用时读取并缓存
+ */
 public class Resource {
 
-    private final String path;
-    private final String name;
+    private final Root root;
+    /**
+     * Latin-1编码的byte[]，包含其他字符时为String
+     */
+    private final Object name;
+    /**
+     * {size, lastModified}，第一次读取前为null
+     */
+    private volatile long[] attributes;
 
     public Resource(String path, String name) {
-        this.path = path;
-        this.name = name;
+        this(Root.of(path, JarFileCache.shared()), name);
+    }
+
+    Resource(Root root, String name) {
+        this.root = root;
+        this.name = compact(name);
     }
 
     public String getPath() {
-        return path;
+        if (root.directory) {
+            return "file:" + root.path + File.separator + getName();
+        }
+        return root.path;
     }
     public String getName() {
-        return name;
+        if (name instanceof byte[]) {
+            return new String((byte[]) name, StandardCharsets.ISO_8859_1);
+        }
+        return (String) name;
+    }
+
+    public boolean isInJar() {
+        return root.jar;
+    }
+
+    Root root() {
+        return root;
+    }
+
+    /**
+     * 内容的字节数，jar中的条目为解压后的大小，未知时为-1
+     * @return
+     * @throws IOException
+     */
+    public long size() throws IOException {
+        return attributes()[0];
+    }
+
+    /**
+     * 修改时间（毫秒），未知时为-1
+     * @return
+     * @throws IOException
+     */
+    public long lastModified() throws IOException {
+        return attributes()[1];
+    }
+
+    /**
+     * 打开资源，jar中的资源通过共享的jar句柄读取，关闭流时释放句柄
+     * @return
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        if (!isInJar()) {
+            return Files.newInputStream(filePath());
+        }
+        JarFileCache.Handle handle = root.jarFileCache.acquire(root.jarFile());
+        try {
+            JarFile jar = handle.getJarFile();
+            JarEntry entry = jarEntry(jar);
+            return new FilterInputStream(jar.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        handle.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            handle.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 目录中的资源返回FileChannel，jar中的资源返回解压的流
+     * @return
+     * @throws IOException
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        if (!isInJar()) {
+            return FileChannel.open(filePath(), StandardOpenOption.READ);
+        }
+        return Channels.newChannel(openStream());
+    }
+
+    /**
+     * 只读的内容：目录中的资源直接映射，jar中的条目是压缩的，读入大小正好的堆内存
+     * @return
+     * @throws IOException
+     */
+    public ByteBuffer map() throws IOException {
+        if (!isInJar()) {
+            try (FileChannel channel = FileChannel.open(filePath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        long length = size();
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Resource too large: " + this);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length < 0 ? 8192 : (int) length);
+        try (ReadableByteChannel channel = openChannel()) {
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    if (length >= 0) {
+                        break;
+                    }
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    // 通过Buffer调用，JDK 9+编译时不会链接到Java 8中不存在的ByteBuffer协变方法
+                    ((Buffer) buffer).flip();
+                    buffer = larger.put(buffer);
+                }
+            }
+        }
+        ((Buffer) buffer).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private long[] attributes() throws IOException {
+        long[] loaded = attributes;
+        if (loaded != null) {
+            return loaded;
+        }
+        if (!isInJar()) {
+            BasicFileAttributes file = Files.readAttributes(filePath(), BasicFileAttributes.class);
+            loaded = new long[] {file.size(), file.lastModifiedTime().toMillis()};
+        } else {
+            try (JarFileCache.Handle handle = root.jarFileCache.acquire(root.jarFile())) {
+                JarEntry entry = jarEntry(handle.getJarFile());
+                loaded = new long[] {entry.getSize(), entry.getTime()};
+            }
+        }
+        attributes = loaded;
+        return loaded;
+    }
+
+    private JarEntry jarEntry(JarFile jar) throws FileNotFoundException {
+        String entryName = getName();
+        JarEntry entry = jar.getJarEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException(root.path + "/" + entryName);
+        }
+        return entry;
+    }
+
+    private Path filePath() {
+        if (root.directory) {
+            return Paths.get(root.path, getName());
+        }
+        return Paths.get(root.path.substring("file:".length()));
+    }
+
+    /**
+     * 全部是Latin-1字符时返回byte[]，否则返回原字符串
+     */
+    private static Object compact(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0xFF) {
+                return name;
+            }
+        }
+        return name.getBytes(StandardCharsets.ISO_8859_1);
     }
 
     @Override
     public String toString() {
         return "ResourceResolver{" +
-                "path='" + path + '\'' +
-                ", name='" + name + '\'' +
+                "path='" + getPath() + '\'' +
+                ", name='" + getName() + '\'' +
                 '}';
     }
+
+    /**
+     * 类路径根，同一次扫描中该根下的所有资源共享
+     * - jar：path为jar:file:/x.jar!
+     * - 目录：path为根目录的绝对路径，资源的路径为path + 分隔符 + name
+     * - 单个资源：path为资源完整的file:路径
+     */
+    static final class Root {
+
+        final String path;
+        final boolean jar;
+        final boolean directory;
+        final JarFileCache jarFileCache;
+        private volatile Path jarFile;
+
+        private Root(String path, boolean jar, boolean directory, JarFileCache jarFileCache) {
+            this.path = path;
+            this.jar = jar;
+            this.directory = directory;
+            this.jarFileCache = jarFileCache;
+        }
+
+        static Root jar(String path, JarFileCache jarFileCache) {
+            return new Root(path, true, false, jarFileCache);
+        }
+
+        static Root directory(String baseDir, JarFileCache jarFileCache) {
+            return new Root(baseDir, false, true, jarFileCache);
+        }
+
+        static Root of(String path, JarFileCache jarFileCache) {
+            return new Root(path, path.startsWith("jar:"), false, jarFileCache);
+        }
+
+        /**
+         * jar:file:/x.jar! -> /x.jar
+         */
+        Path jarFile() {
+            Path file = jarFile;
+            if (file == null) {
+                String ssp = URI.create(path + "/").getRawSchemeSpecificPart();
+                file = Paths.get(URI.create(ssp.substring(0, ssp.indexOf("!/"))));
+                jarFile = file;
+            }
+            return file;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
 }
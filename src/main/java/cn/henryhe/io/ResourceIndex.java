@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 构建期生成的资源索引，类似spring的META-INF/spring.components
+ * 每行一个相对类路径根的资源名（/分隔，已排序），#开头为注释
+ */
+public class ResourceIndex {
+
+    public static final String INDEX_LOCATION = "META-INF/resource.index";
+
+    public static final String HEADER = "# HandWriteSpring resource index v1";
+
+    private final List<String> entries;
+
+    private ResourceIndex(List<String> entries) {
+        this.entries = entries;
+    }
+
+    public static ResourceIndex read(InputStream inputStream) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    entries.add(line);
+                }
+            }
+        }
+        // 兼容手写的未排序索引
+        Collections.sort(entries);
+        return new ResourceIndex(entries);
+    }
+
+    /**
+     * 包路径下的所有资源，二分定位起点
+     * @param packagePath cn/henryhe/io
+     * @return
+     */
+    public List<String> entries(String packagePath) {
+        String prefix = packagePath.isEmpty() || packagePath.endsWith("/") ? packagePath : packagePath + "/";
+        int from = Collections.binarySearch(entries, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = from; i < entries.size() && entries.get(i).startsWith(prefix); i++) {
+            result.add(entries.get(i));
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -1,17 +1,36 @@
 package cn.henryhe.io;
 
+import cn.henryhe.metrics.Metrics;
+import cn.henryhe.metrics.MetricsRegistry;
+import cn.henryhe.metrics.Span;
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.FileSystems;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -23,11 +42,42 @@ public class ResourceResolver {
 
     private String basePackage;
 
+    private boolean useIndex;
+
+    private ScanCache scanCache;
+
+    private JarFileCache jarFileCache = JarFileCache.shared();
+
 
     public ResourceResolver(String basePackage) {
         this.basePackage = basePackage;
     }
 
+    /**
+     * 是否读取构建期生成的META-INF/resource.index，默认关闭：索引生成后新增的类不会被发现，只适合打包后不再变化的类路径
+     * 索引中的条目缺失时视为索引过期，回退到遍历
+     * @param useIndex
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * 设置扫描结果的磁盘缓存目录，未变化的类路径根直接读取缓存，null表示不使用缓存
+     * @param directory
+     */
+    public void setCacheDirectory(Path directory) {
+        this.scanCache = directory == null ? null : new ScanCache(directory);
+    }
+
+    /**
+     * 设置jar句柄缓存，默认使用全局共享的缓存
+     * @param jarFileCache
+     */
+    public void setJarFileCache(JarFileCache jarFileCache) {
+        this.jarFileCache = jarFileCache;
+    }
+
     /**
      * 扫描路径下所有的类
      *
@@ -43,58 +93,370 @@ public class ResourceResolver {
             scan0(basePackagePath, path, collector, mapper);
             return collector;
         } catch (Exception exception) {
-            LOGGER.error("");
+            LOGGER.error("scan failed at " + basePackagePath, exception);
         }
 
 
         return Arrays.asList(mapper.apply(new Resource("", "")));
     }
 
+    /**
+     * 并行扫描，使用公共ForkJoinPool
+     *
+     * @param mapper，函数映射
+     * @return
+     */
+    public <R> List<R> scanParallel(Function<Resource, R> mapper) {
+        return scanParallel(mapper, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行扫描：各个类路径根以及根下的子目录作为独立任务在pool中并行遍历，mapper同样并行执行。
+     * 结果顺序是确定的：先按类路径根的顺序，根内按资源名排序，保证bean注册可复现。
+     *
+     * @param mapper，函数映射，需要是线程安全的
+     * @param pool，执行扫描的线程池
+     * @return
+     */
+    public <R> List<R> scanParallel(Function<Resource, R> mapper, ForkJoinPool pool) {
+        String basePackagePath = this.basePackage.replace(".", "/");
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN);
+        try {
+            List<URI> roots = findRoots(basePackagePath);
+            // 在pool中执行，parallelStream也会复用该pool
+            return pool.submit(() -> {
+                List<ForkJoinTask<List<Resource>>> tasks = new ArrayList<>(roots.size());
+                for (URI uri : roots) {
+                    tasks.add(new RootScanTask(basePackagePath, uri).fork());
+                }
+                List<List<Resource>> listed = new ArrayList<>(tasks.size());
+                List<Resource> resources = new ArrayList<>();
+                for (ForkJoinTask<List<Resource>> task : tasks) {
+                    List<Resource> part = task.join();
+                    listed.add(part);
+                    resources.addAll(part);
+                }
+                // 有序流的map/collect保持原有顺序，先保留null以便按类路径根统计选中的资源数
+                List<R> mapped = resources.parallelStream()
+                        .map(mapper)
+                        .collect(Collectors.toList());
+                Metrics metrics = MetricsRegistry.get();
+                List<R> collector = new ArrayList<>();
+                int offset = 0;
+                for (List<Resource> part : listed) {
+                    int matched = 0;
+                    for (int i = offset; i < offset + part.size(); i++) {
+                        R r = mapped.get(i);
+                        if (r != null) {
+                            collector.add(r);
+                            matched++;
+                        }
+                    }
+                    if (!part.isEmpty()) {
+                        metrics.rootMatched(part.get(0).root().path, matched);
+                    }
+                    offset += part.size();
+                }
+                metrics.scanCompleted(basePackage, span, resources.size(), collector.size());
+                return collector;
+            }).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("scan interrupted at " + basePackagePath, exception);
+        } catch (IOException | URISyntaxException | ExecutionException exception) {
+            LOGGER.error("scan failed at " + basePackagePath, exception);
+        }
+        return Arrays.asList(mapper.apply(new Resource("", "")));
+    }
+
+    /**
+     * 惰性扫描：类路径根在元素被消费时才会遍历，findFirst等短路操作可以提前结束，
+     * parallel()时按类路径根以及根内的资源拆分。
+     * 返回的Stream持有jar句柄和目录流，需要使用try-with-resources关闭。
+     *
+     * @return
+     */
+    public Stream<Resource> stream() {
+        String basePackagePath = this.basePackage.replace(".", "/");
+        List<URI> roots;
+        try {
+            roots = findRoots(basePackagePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+        Set<AutoCloseable> opened = ConcurrentHashMap.newKeySet();
+        ResourceSpliterator spliterator = new ResourceSpliterator(basePackagePath, roots, 0, roots.size(), opened);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            for (AutoCloseable closeable : opened) {
+                closeQuietly(closeable);
+            }
+            opened.clear();
+        });
+    }
+
+    /**
+     * 扫描class文件并解析字节码元数据，在加载类之前按注解、父类等条件过滤
+     * 无法读取或者格式错误的class文件记录警告后跳过，不影响其他资源
+     *
+     * @param filter，例如 m -> m.hasAnnotation(Component.class)
+     * @return
+     */
+    public List<ClassMetadata> scanClassMetadata(Predicate<ClassMetadata> filter) {
+        return scan(res -> {
+            if (!res.getName().endsWith(".class")) {
+                return null;
+            }
+            ClassMetadata metadata;
+            try (InputStream input = res.openStream()) {
+                metadata = ClassMetadataReader.read(input);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("skip unreadable class file " + res.getName() + " in " + res.root(), e);
+                return null;
+            }
+            return filter.test(metadata) ? metadata : null;
+        });
+    }
+
     private <R> void scan0(String basePackagePath, String path, List<R> collector, Function<Resource,R> mapper) throws IOException, URISyntaxException {
-        LOGGER.warn("scan basePackagePath at " + basePackagePath);
+        LOGGER.debug("scan basePackagePath at " + basePackagePath);
+        Metrics metrics = MetricsRegistry.get();
+        Span span = metrics.begin(Metrics.Phase.SCAN);
+        int visited = 0;
+        for (URI uri : findRoots(path)) {
+            List<Resource> resources = listRoot(basePackagePath, uri);
+            int matched = 0;
+            for (Resource res : resources) {
+                // 真正需要确认是否是class 或者是 properties被放置在Function中.Nice
+                R r = mapper.apply(res);
+                if (r != null) {
+                    collector.add(r);
+                    matched++;
+                }
+            }
+            if (!resources.isEmpty()) {
+                metrics.rootMatched(resources.get(0).root().path, matched);
+            }
+            visited += resources.size();
+        }
+        metrics.scanCompleted(basePackage, span, visited, collector.size());
+    }
+
+    /**
+     * 列出单个类路径根下的资源：优先读取索引，其次磁盘缓存，最后遍历
+     */
+    private List<Resource> listRoot(String basePackagePath, URI uri) throws IOException {
+        List<Resource> resources = indexedResources(basePackagePath, uri);
+        if (resources == null) {
+            resources = cachedResources(basePackagePath, uri);
+        }
+        if (resources != null) {
+            return resources;
+        }
+        String uriStr = removeTrailingSlash(uri.toString());
+        List<ScanCache.Stamp> stamps = scanCache == null ? null : new ArrayList<>();
+        if (uriStr.startsWith("jar:")) {
+            // jar包
+            if (stamps != null) {
+                stamps.add(ScanCache.Stamp.of(jarFile(uri)));
+            }
+            resources = scanJar(jarBaseDir(basePackagePath, uriStr), basePackagePath, jarFile(uri));
+        } else {
+            // 单独class文件
+            Path root = Paths.get(uri);
+            resources = scanFile(Resource.Root.directory(fileBaseDir(basePackagePath, root), jarFileCache), root, stamps);
+        }
+        storeCache(uri, stamps, resources);
+        return resources;
+    }
+
+    private List<URI> findRoots(String path) throws IOException, URISyntaxException {
+        List<URI> roots = new ArrayList<>();
         Enumeration<URL> theUrlPaths = getContextClassLoader().getResources(path);
         while (theUrlPaths.hasMoreElements()) {
-            URL url = theUrlPaths.nextElement();
-            URI uri = url.toURI();
-            String uriStr = removeTrailingSlash(uri.toString());
-            String uriBaseStr = uriStr.substring(0, uriStr.length() - basePackagePath.length());
-            // 根据前缀确认类型
-            if (uriBaseStr.startsWith("file:")) {
-                uriBaseStr = uriBaseStr.substring(5);
-            }
-            if (uriStr.startsWith("jar:")) {
-                // jar包
-                scanFile(true, uriBaseStr, jarUriToPath(basePackagePath, uri), collector, mapper);
-            } else {
-                // 单独class文件
-                scanFile(false, uriBaseStr, Paths.get(uri), collector, mapper);
+            roots.add(theUrlPaths.nextElement().toURI());
+        }
+        return roots;
+    }
+
+    /**
+     * 直接读取jar的中央目录，按包前缀过滤条目
+     */
+    private List<Resource> scanJar(String baseDir, String basePackagePath, Path jarPath) throws IOException {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+        Resource.Root root = Resource.Root.jar(baseDir, jarFileCache);
+        List<Resource> resources = new ArrayList<>();
+        try (JarFileCache.Handle handle = jarFileCache.acquire(jarPath)) {
+            for (String name : handle.entries(basePackagePath + "/")) {
+                resources.add(new Resource(root, name));
             }
         }
+        logRoot(root, "scan", resources.size(), span);
+        return resources;
     }
 
-    private <R> void scanFile(boolean isJar, String uriBaseStr, Path root, List<R> collector, Function<Resource,R> mapper) throws IOException {
-        String baseDir = removeTrailingSlash(uriBaseStr);
+    /**
+     * 遍历类路径根，stamps不为null时同时采集目录的指纹
+     */
+    private List<Resource> scanFile(Resource.Root baseDir, Path root, List<ScanCache.Stamp> stamps) throws IOException {
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+        List<Resource> resources = new ArrayList<>();
         // 遍历
-        Files.walk(root).filter(Files::isRegularFile).forEach(file -> {
-            Resource res = null;
-            if (isJar) {
-                res = new Resource(baseDir, removeLeadingSlash(file.toString()));
-            } else {
-                String path = file.toString();
-                String name = removeLeadingSlash(path.substring(baseDir.length()));
-                res = new Resource("file:" + path, name);
-            }
-            LOGGER.warn("found resources " + res.toString());
-            // 真正需要确认是否是class 或者是 properties被放置在Function中.Nice
-            R r = mapper.apply(res);
-            if (r != null) {
-                collector.add(r);
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                if (Files.isRegularFile(file)) {
+                    resources.add(toResource(baseDir, file));
+                } else if (stamps != null && Files.isDirectory(file)) {
+                    // 目录在读取其子项之前记录指纹
+                    stamps.add(ScanCache.Stamp.of(file));
+                }
             }
-        });
+        }
+        logRoot(baseDir, "scan", resources.size(), span);
+        return resources;
+    }
+
+    private List<Resource> cachedResources(String basePackagePath, URI uri) {
+        if (scanCache == null) {
+            return null;
+        }
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+        List<String> names = scanCache.load(uri);
+        if (names == null) {
+            return null;
+        }
+        String uriStr = removeTrailingSlash(uri.toString());
+        boolean isJar = uriStr.startsWith("jar:");
+        String baseDir = isJar ? jarBaseDir(basePackagePath, uriStr) : fileBaseDir(basePackagePath, Paths.get(uri));
+        Resource.Root root = newRoot(isJar, baseDir);
+        List<Resource> resources = new ArrayList<>(names.size());
+        for (String name : names) {
+            resources.add(new Resource(root, name));
+        }
+        logRoot(root, "cache", resources.size(), span);
+        return resources;
     }
 
-    private Path jarUriToPath(String basePackagePath, URI uri) throws IOException {
-        return FileSystems.newFileSystem(uri, new HashMap<>()).getPath(basePackagePath);
+    private void storeCache(URI uri, Collection<ScanCache.Stamp> stamps, List<Resource> resources) {
+        if (scanCache == null || stamps == null) {
+            return;
+        }
+        List<String> names = new ArrayList<>(resources.size());
+        for (Resource res : resources) {
+            names.add(res.getName());
+        }
+        scanCache.store(uri, new ArrayList<>(stamps), names);
+    }
+
+    /**
+     * 读取类路径根下的资源索引，O(索引条目数)，没有索引或者索引过期时返回null由调用方回退到遍历
+     */
+    private List<Resource> indexedResources(String basePackagePath, URI uri) throws IOException {
+        if (!useIndex) {
+            return null;
+        }
+        Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+        String uriStr = removeTrailingSlash(uri.toString());
+        boolean isJar = uriStr.startsWith("jar:");
+        String baseDir;
+        List<String> names;
+        if (isJar) {
+            baseDir = jarBaseDir(basePackagePath, uriStr);
+            try (JarFileCache.Handle handle = jarFileCache.acquire(jarFile(uri))) {
+                JarFile jar = handle.getJarFile();
+                JarEntry entry = jar.getJarEntry(ResourceIndex.INDEX_LOCATION);
+                if (entry == null) {
+                    return null;
+                }
+                try (InputStream input = jar.getInputStream(entry)) {
+                    names = ResourceIndex.read(input).entries(basePackagePath);
+                }
+                for (String name : names) {
+                    if (jar.getJarEntry(name) == null) {
+                        LOGGER.info("stale resource index in " + baseDir + ", missing " + name);
+                        return null;
+                    }
+                }
+            }
+        } else {
+            baseDir = fileBaseDir(basePackagePath, Paths.get(uri));
+            Path indexFile = Paths.get(baseDir).resolve(ResourceIndex.INDEX_LOCATION);
+            if (!Files.isRegularFile(indexFile)) {
+                return null;
+            }
+            try (InputStream input = Files.newInputStream(indexFile)) {
+                names = ResourceIndex.read(input).entries(basePackagePath);
+            }
+            for (String name : names) {
+                if (!Files.isRegularFile(Paths.get(baseDir, name))) {
+                    LOGGER.info("stale resource index in " + baseDir + ", missing " + name);
+                    return null;
+                }
+            }
+        }
+        Resource.Root root = newRoot(isJar, baseDir);
+        List<Resource> resources = new ArrayList<>(names.size());
+        for (String name : names) {
+            resources.add(new Resource(root, isJar ? name : name.replace('/', File.separatorChar)));
+        }
+        logRoot(root, "index", resources.size(), span);
+        return resources;
+    }
+
+    private Resource.Root newRoot(boolean isJar, String baseDir) {
+        return isJar ? Resource.Root.jar(baseDir, jarFileCache) : Resource.Root.directory(baseDir, jarFileCache);
+    }
+
+    private Resource toResource(Resource.Root root, Path file) {
+        String name = removeLeadingSlash(file.toString().substring(root.path.length()));
+        return new Resource(root, name);
+    }
+
+    /**
+     * 每个类路径根输出一条汇总日志，代替逐个资源的日志，同时记录耗时和资源数
+     */
+    private void logRoot(Resource.Root root, String source, int count, Span span) {
+        MetricsRegistry.get().rootScanned(root.path, source, span, count);
+        LOGGER.info("found " + count + " resources in " + root + " (" + source + ")");
+    }
+
+    /**
+     * jar:file:/x.jar!/cn/henryhe -> jar:file:/x.jar!
+     */
+    private String jarBaseDir(String basePackagePath, String uriStr) {
+        return removeTrailingSlash(uriStr.substring(0, uriStr.length() - basePackagePath.length()));
+    }
+
+    /**
+     * 包目录向上回退包的层级得到类路径根目录，使用Path避免URI编码（如空格%20）导致的截取偏差
+     */
+    private String fileBaseDir(String basePackagePath, Path root) {
+        Path base = root;
+        for (String segment : basePackagePath.split("/")) {
+            if (!segment.isEmpty() && base.getParent() != null) {
+                base = base.getParent();
+            }
+        }
+        return removeTrailingSlash(base.toString());
+    }
+
+    /**
+     * jar:file:/x.jar!/cn/henryhe -> /x.jar
+     */
+    private Path jarFile(URI uri) {
+        String ssp = uri.getRawSchemeSpecificPart();
+        return Paths.get(URI.create(ssp.substring(0, ssp.indexOf("!/"))));
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.warn("failed to close " + closeable, e);
+        }
     }
 
     private String removeTrailingSlash(String string) {
@@ -120,4 +482,258 @@ public class ResourceResolver {
         }
         return cl;
     }
+
+    /**
+     * 单个类路径根的扫描任务
+     */
+    private class RootScanTask extends RecursiveTask<List<Resource>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String basePackagePath;
+        private final URI uri;
+
+        RootScanTask(String basePackagePath, URI uri) {
+            this.basePackagePath = basePackagePath;
+            this.uri = uri;
+        }
+
+        @Override
+        protected List<Resource> compute() {
+            try {
+                String uriStr = removeTrailingSlash(uri.toString());
+                if (uriStr.startsWith("jar:")) {
+                    // jar内部目录遍历成本低，单任务顺序完成后排序
+                    return sorted(listRoot(basePackagePath, uri));
+                }
+                List<Resource> resources = indexedResources(basePackagePath, uri);
+                if (resources == null) {
+                    resources = cachedResources(basePackagePath, uri);
+                }
+                if (resources != null) {
+                    return sorted(resources);
+                }
+                Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+                Path root = Paths.get(uri);
+                Queue<ScanCache.Stamp> stamps = scanCache == null ? null : new ConcurrentLinkedQueue<>();
+                Resource.Root baseDir = Resource.Root.directory(fileBaseDir(basePackagePath, root), jarFileCache);
+                resources = new DirectoryScanTask(baseDir, root, stamps).compute();
+                logRoot(baseDir, "scan", resources.size(), span);
+                storeCache(uri, stamps, resources);
+                // 与索引、缓存、jar的结果使用同一个顺序
+                return sorted(resources);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private List<Resource> sorted(List<Resource> resources) {
+            List<Resource> copy = new ArrayList<>(resources);
+            copy.sort(Comparator.comparing(Resource::getName));
+            return copy;
+        }
+    }
+
+    /**
+     * 目录扫描任务：子目录fork为子任务，合并后的顺序不确定，由RootScanTask统一按资源名排序
+     */
+    private class DirectoryScanTask extends RecursiveTask<List<Resource>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Resource.Root baseDir;
+        private final Path dir;
+        private final Queue<ScanCache.Stamp> stamps;
+
+        DirectoryScanTask(Resource.Root baseDir, Path dir, Queue<ScanCache.Stamp> stamps) {
+            this.baseDir = baseDir;
+            this.dir = dir;
+            this.stamps = stamps;
+        }
+
+        @Override
+        protected List<Resource> compute() {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                if (stamps != null) {
+                    stamps.add(ScanCache.Stamp.of(dir));
+                }
+                for (Path child : stream) {
+                    children.add(child);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // 先fork所有子目录，再合并
+            List<Object> parts = new ArrayList<>(children.size());
+            for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                    parts.add(new DirectoryScanTask(baseDir, child, stamps).fork());
+                } else if (Files.isRegularFile(child)) {
+                    parts.add(toResource(baseDir, child));
+                }
+            }
+            List<Resource> resources = new ArrayList<>();
+            for (Object part : parts) {
+                if (part instanceof Resource) {
+                    resources.add((Resource) part);
+                } else {
+                    resources.addAll(((DirectoryScanTask) part).join());
+                }
+            }
+            return resources;
+        }
+    }
+
+    /**
+     * 惰性的资源Spliterator，按需打开类路径根，根遍历完毕或者Stream关闭时释放句柄
+     */
+    private class ResourceSpliterator implements Spliterator<Resource> {
+
+        private final String basePackagePath;
+        private final List<URI> roots;
+        private final Set<AutoCloseable> opened;
+        private int index;
+        private final int fence;
+        private Iterator<Resource> current;
+        private AutoCloseable currentCloseable;
+
+        ResourceSpliterator(String basePackagePath, List<URI> roots, int index, int fence, Set<AutoCloseable> opened) {
+            this.basePackagePath = basePackagePath;
+            this.roots = roots;
+            this.index = index;
+            this.fence = fence;
+            this.opened = opened;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Resource> action) {
+            while (true) {
+                if (current != null) {
+                    if (current.hasNext()) {
+                        action.accept(current.next());
+                        return true;
+                    }
+                    closeCurrent();
+                }
+                if (index >= fence) {
+                    return false;
+                }
+                openRoot(roots.get(index++));
+            }
+        }
+
+        @Override
+        public Spliterator<Resource> trySplit() {
+            int remaining = fence - index;
+            if (remaining >= 2 || (remaining == 1 && current != null)) {
+                // 前一半类路径根（连同正在遍历的根）交给新的Spliterator
+                int mid = index + remaining / 2;
+                ResourceSpliterator prefix = new ResourceSpliterator(basePackagePath, roots, index, mid, opened);
+                prefix.current = current;
+                prefix.currentCloseable = currentCloseable;
+                index = mid;
+                current = null;
+                currentCloseable = null;
+                return prefix;
+            }
+            if (remaining == 1) {
+                openRoot(roots.get(index++));
+            }
+            if (current == null) {
+                return null;
+            }
+            // 只剩一个根时，读出剩余资源对半拆分
+            List<Resource> rest = new ArrayList<>();
+            current.forEachRemaining(rest::add);
+            closeCurrent();
+            int half = rest.size() / 2;
+            current = rest.subList(half, rest.size()).iterator();
+            if (half == 0) {
+                return null;
+            }
+            return Spliterators.spliterator(rest.subList(0, half).toArray(), ORDERED | NONNULL);
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        private void openRoot(URI uri) {
+            try {
+                List<Resource> listed = indexedResources(basePackagePath, uri);
+                if (listed == null) {
+                    listed = cachedResources(basePackagePath, uri);
+                }
+                if (listed != null) {
+                    current = listed.iterator();
+                    return;
+                }
+                String uriStr = removeTrailingSlash(uri.toString());
+                if (uriStr.startsWith("jar:")) {
+                    JarFileCache.Handle handle = jarFileCache.acquire(jarFile(uri));
+                    // 同一个jar可能出现在多个根中，每次登记独立的释放动作
+                    register(handle::close);
+                    Resource.Root root = Resource.Root.jar(jarBaseDir(basePackagePath, uriStr), jarFileCache);
+                    Iterator<String> names = handle.entryIterator(basePackagePath + "/");
+                    current = counted(root, names, name -> new Resource(root, name));
+                } else {
+                    Path dir = Paths.get(uri);
+                    Resource.Root root = Resource.Root.directory(fileBaseDir(basePackagePath, dir), jarFileCache);
+                    Stream<Path> files = Files.walk(dir);
+                    register(files);
+                    current = counted(root, files.filter(Files::isRegularFile).iterator(), file -> toResource(root, file));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 惰性遍历时边产出边计数，遍历完毕时输出该根的汇总日志，耗时包括下游消费资源的时间
+         */
+        private <E> Iterator<Resource> counted(Resource.Root root, Iterator<E> source, Function<E, Resource> mapper) {
+            Span span = MetricsRegistry.get().begin(Metrics.Phase.SCAN_ROOT);
+            return new Iterator<Resource>() {
+                private int count;
+                private boolean logged;
+
+                @Override
+                public boolean hasNext() {
+                    boolean hasNext = source.hasNext();
+                    if (!hasNext && !logged) {
+                        logged = true;
+                        logRoot(root, "scan", count, span);
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public Resource next() {
+                    Resource res = mapper.apply(source.next());
+                    count++;
+                    return res;
+                }
+            };
+        }
+
+        private void register(AutoCloseable closeable) {
+            currentCloseable = closeable;
+            opened.add(closeable);
+        }
+
+        private void closeCurrent() {
+            if (currentCloseable != null && opened.remove(currentCloseable)) {
+                closeQuietly(currentCloseable);
+            }
+            current = null;
+            currentCloseable = null;
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cn.henryhe.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 扫描结果的磁盘缓存，每个类路径根（含包路径）一个缓存文件
+ * - jar包：以jar文件的路径、大小、修改时间作为指纹
+ * - 目录：记录扫描时每个子目录的修改时间，目录内新增/删除文件都会改变其修改时间
+ * 指纹全部一致时直接返回缓存的资源名，否则由调用方重新遍历并写回
+ */
+public class ScanCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ScanCache.class);
+
+    private static final String HEADER = "# HandWriteSpring scan cache v1";
+
+    private final Path directory;
+
+    public ScanCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 读取缓存，缓存不存在、损坏或者指纹失效时返回null
+     * @param root 类路径根
+     * @return 资源名列表
+     */
+    public List<String> load(URI root) {
+        Path file = cacheFile(root);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()) || !("K\t" + root).equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("S\t")) {
+                    if (!Stamp.parse(line.substring(2)).isValid()) {
+                        return null;
+                    }
+                } else if (line.startsWith("R\t")) {
+                    names.add(line.substring(2));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("ignore broken scan cache " + file, e);
+            return null;
+        }
+        return names;
+    }
+
+    /**
+     * 写入缓存，先写临时文件再原子替换，失败只记录日志
+     * @param root 类路径根
+     * @param stamps 指纹，需在遍历之前采集
+     * @param names 资源名列表
+     */
+    public void store(URI root, List<Stamp> stamps, List<String> names) {
+        Path file = cacheFile(root);
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                writer.write("K\t" + root);
+                writer.newLine();
+                for (Stamp stamp : stamps) {
+                    writer.write("S\t" + stamp);
+                    writer.newLine();
+                }
+                for (String name : names) {
+                    writer.write("R\t" + name);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("failed to write scan cache " + file, e);
+        }
+    }
+
+    private Path cacheFile(URI root) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(root.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 5);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return directory.resolve(sb.append(".scan").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 文件或目录的指纹：路径、大小、修改时间
+     */
+    public static class Stamp {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        private Stamp(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public static Stamp of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            // 目录大小没有意义，只比较修改时间
+            long size = attributes.isDirectory() ? -1 : attributes.size();
+            return new Stamp(path.toString(), size, attributes.lastModifiedTime().toMillis());
+        }
+
+        static Stamp parse(String line) {
+            int first = line.indexOf('\t');
+            int second = line.indexOf('\t', first + 1);
+            return new Stamp(line.substring(second + 1),
+                    Long.parseLong(line.substring(0, first)),
+                    Long.parseLong(line.substring(first + 1, second)));
+        }
+
+        boolean isValid() {
+            try {
+                Stamp current = of(Paths.get(path));
+                return current.size == size && current.lastModified == lastModified;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + "\t" + lastModified + "\t" + path;
+        }
+    }
+}
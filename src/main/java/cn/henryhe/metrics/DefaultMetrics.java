@@ -0,0 +1,281 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 默认实现：计数器使用LongAdder，多线程同时扫描、查找时不会争用同一个缓存行
+ * - 按类路径根、配置文件分别汇总，两者的数量在启动后基本固定
+ * - 当前JVM支持JFR时，扫描和配置加载的事件在阶段开始时begin、结束时提交，JFR未开启录制时只有一次isEnabled判断
+ */
+public class DefaultMetrics implements Metrics {
+
+    private final Map<String, RootStats> roots = new ConcurrentHashMap<>();
+    private final Map<String, SourceStats> sources = new ConcurrentHashMap<>();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder filesRead = new LongAdder();
+    private final LongAdder configLoads = new LongAdder();
+    private final LongAdder configLoadNanos = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder placeholderResolutions = new LongAdder();
+    private final LongAdder placeholderDepthSum = new LongAdder();
+    private final LongAccumulator maxPlaceholderDepth = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 不支持JFR的JVM上为null
+     */
+    private final JfrEvents jfr = JfrEvents.create();
+
+    @Override
+    public Span begin(Phase phase) {
+        return new Span(jfr == null ? null : jfr.begin(phase));
+    }
+
+    @Override
+    public void rootScanned(String root, String source, Span span, int visited) {
+        RootStats stats = roots.computeIfAbsent(root, k -> new RootStats());
+        stats.scans.increment();
+        stats.nanos.add(span.elapsed());
+        stats.visited.add(visited);
+        if (jfr != null) {
+            jfr.rootScanned(span.event, root, source, visited);
+        }
+    }
+
+    @Override
+    public void rootMatched(String root, int matched) {
+        roots.computeIfAbsent(root, k -> new RootStats()).matched.add(matched);
+    }
+
+    @Override
+    public void scanCompleted(String basePackage, Span span, int visited, int matched) {
+        scans.increment();
+        scanNanos.add(span.elapsed());
+        if (jfr != null) {
+            jfr.scanCompleted(span.event, basePackage, visited, matched);
+        }
+    }
+
+    @Override
+    public void bytesRead(String path, long bytes) {
+        filesRead.increment();
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void configParsed(String source, Span span, int keys) {
+        SourceStats stats = sources.computeIfAbsent(source, k -> new SourceStats());
+        stats.parses.increment();
+        stats.nanos.add(span.elapsed());
+        stats.keys.add(keys);
+        if (jfr != null) {
+            jfr.configParsed(span.event, source, keys);
+        }
+    }
+
+    @Override
+    public void configLoaded(Span span, int sources) {
+        configLoads.increment();
+        configLoadNanos.add(span.elapsed());
+        if (jfr != null) {
+            jfr.configLoaded(span.event, sources);
+        }
+    }
+
+    @Override
+    public void propertyLookup(boolean found) {
+        lookups.increment();
+        if (!found) {
+            misses.increment();
+        }
+    }
+
+    @Override
+    public void placeholderResolved(int depth) {
+        placeholderResolutions.increment();
+        placeholderDepthSum.add(depth);
+        maxPlaceholderDepth.accumulate(depth);
+    }
+
+    /**
+     * 类路径根 -> 扫描统计
+     * @return
+     */
+    public Map<String, RootStats> getRoots() {
+        return Collections.unmodifiableMap(roots);
+    }
+
+    /**
+     * 配置文件 -> 解析统计
+     * @return
+     */
+    public Map<String, SourceStats> getConfigSources() {
+        return Collections.unmodifiableMap(sources);
+    }
+
+    public long getScans() {
+        return scans.sum();
+    }
+
+    public long getScanNanos() {
+        return scanNanos.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getFilesRead() {
+        return filesRead.sum();
+    }
+
+    public long getConfigLoads() {
+        return configLoads.sum();
+    }
+
+    public long getConfigLoadNanos() {
+        return configLoadNanos.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPlaceholderResolutions() {
+        return placeholderResolutions.sum();
+    }
+
+    public long getMaxPlaceholderDepth() {
+        return maxPlaceholderDepth.get();
+    }
+
+    public double getAveragePlaceholderDepth() {
+        long count = placeholderResolutions.sum();
+        return count == 0 ? 0 : (double) placeholderDepthSum.sum() / count;
+    }
+
+    public boolean isJfrAvailable() {
+        return jfr != null;
+    }
+
+    public void reset() {
+        roots.clear();
+        sources.clear();
+        for (LongAdder adder : new LongAdder[] {scans, scanNanos, bytesRead, filesRead, configLoads, configLoadNanos,
+                lookups, misses, placeholderResolutions, placeholderDepthSum}) {
+            adder.reset();
+        }
+        maxPlaceholderDepth.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultMetrics{" +
+                "scans=" + getScans() +
+                ", scanMillis=" + getScanNanos() / 1_000_000 +
+                ", roots=" + roots +
+                ", filesRead=" + getFilesRead() +
+                ", bytesRead=" + getBytesRead() +
+                ", configLoads=" + getConfigLoads() +
+                ", configLoadMillis=" + getConfigLoadNanos() / 1_000_000 +
+                ", configSources=" + sources +
+                ", lookups=" + getLookups() +
+                ", misses=" + getMisses() +
+                ", maxPlaceholderDepth=" + getMaxPlaceholderDepth() +
+                '}';
+    }
+
+    /**
+     * 单个类路径根的扫描统计
+     */
+    public static final class RootStats {
+
+        private final LongAdder scans = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+
+        public long getScans() {
+            return scans.sum();
+        }
+
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        public long getVisited() {
+            return visited.sum();
+        }
+
+        public long getMatched() {
+            return matched.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "{scans=" + getScans() + ", millis=" + getNanos() / 1_000_000 + ", visited=" + getVisited() + ", matched=" + getMatched() + "}";
+        }
+    }
+
+    /**
+     * 单个配置文件的解析统计
+     */
+    public static final class SourceStats {
+
+        private final LongAdder parses = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder keys = new LongAdder();
+
+        public long getParses() {
+            return parses.sum();
+        }
+
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        public long getKeys() {
+            return keys.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "{parses=" + getParses() + ", millis=" + getNanos() / 1_000_000 + ", keys=" + getKeys() + "}";
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 扫描和配置加载的JFR事件，只在jdk.jfr存在时加载（JDK 11+、8u262+）
+ * 事件在阶段开始时begin、结束时提交，JMC中显示为时间段，耗时即事件的duration
+ * 录制时开启：-XX:StartFlightRecording，或者在JMC中按cn.henryhe.*筛选
+ */
+final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    /**
+     * 当前JVM不支持JFR时返回null
+     */
+    static JfrEvents create() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return new JfrEvents();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建阶段对应的事件并begin，未开启录制时返回null
+     */
+    Object begin(Metrics.Phase phase) {
+        Event event;
+        switch (phase) {
+            case SCAN_ROOT:
+                event = new ScanRootEvent();
+                break;
+            case SCAN:
+                event = new ScanEvent();
+                break;
+            case CONFIG_SOURCE:
+                event = new ConfigSourceEvent();
+                break;
+            default:
+                event = new ConfigLoadEvent();
+                break;
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    void rootScanned(Object begun, String root, String source, int visited) {
+        if (begun instanceof ScanRootEvent) {
+            ScanRootEvent event = (ScanRootEvent) begun;
+            event.root = root;
+            event.source = source;
+            event.visited = visited;
+            event.commit();
+        }
+    }
+
+    void scanCompleted(Object begun, String basePackage, int visited, int matched) {
+        if (begun instanceof ScanEvent) {
+            ScanEvent event = (ScanEvent) begun;
+            event.basePackage = basePackage;
+            event.visited = visited;
+            event.matched = matched;
+            event.commit();
+        }
+    }
+
+    void configParsed(Object begun, String source, int keys) {
+        if (begun instanceof ConfigSourceEvent) {
+            ConfigSourceEvent event = (ConfigSourceEvent) begun;
+            event.source = source;
+            event.keys = keys;
+            event.commit();
+        }
+    }
+
+    void configLoaded(Object begun, int sources) {
+        if (begun instanceof ConfigLoadEvent) {
+            ConfigLoadEvent event = (ConfigLoadEvent) begun;
+            event.sources = sources;
+            event.commit();
+        }
+    }
+
+    @Name("cn.henryhe.ScanRoot")
+    @Label("Scan Classpath Root")
+    @Category({"HandWriteSpring", "Startup"})
+    @StackTrace(false)
+    static final class ScanRootEvent extends Event {
+
+        @Label("Root")
+        String root;
+
+        @Label("Source")
+        @Description("index, cache or scan")
+        String source;
+
+        @Label("Visited")
+        int visited;
+    }
+
+    @Name("cn.henryhe.Scan")
+    @Label("Scan Package")
+    @Category({"HandWriteSpring", "Startup"})
+    static final class ScanEvent extends Event {
+
+        @Label("Base Package")
+        String basePackage;
+
+        @Label("Visited")
+        int visited;
+
+        @Label("Matched")
+        int matched;
+    }
+
+    @Name("cn.henryhe.ConfigSource")
+    @Label("Parse Config Source")
+    @Category({"HandWriteSpring", "Startup"})
+    @StackTrace(false)
+    static final class ConfigSourceEvent extends Event {
+
+        @Label("Source")
+        String source;
+
+        @Label("Keys")
+        int keys;
+    }
+
+    @Name("cn.henryhe.ConfigLoad")
+    @Label("Load Config")
+    @Category({"HandWriteSpring", "Startup"})
+    static final class ConfigLoadEvent extends Event {
+
+        @Label("Sources")
+        int sources;
+    }
+}
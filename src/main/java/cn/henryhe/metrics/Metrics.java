@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.metrics;
+
+/**
+ * 启动和配置查找的埋点接口，通过MetricsRegistry.set替换实现
+ * 所有方法都有空的默认实现，只需覆盖关心的部分；实现需要线程安全，并且不能抛出异常
+ * 有耗时的阶段先调用begin，结束时把得到的Span传给对应的方法，时间单位为纳秒
+ */
+public interface Metrics {
+
+    /**
+     * 不记录任何数据
+     */
+    Metrics NOOP = new Metrics() {
+    };
+
+    /**
+     * 有耗时的阶段，分别在结束时对应rootScanned、scanCompleted、configParsed、configLoaded
+     */
+    enum Phase {
+        SCAN_ROOT, SCAN, CONFIG_SOURCE, CONFIG_LOAD
+    }
+
+    /**
+     * 阶段开始
+     * @param phase
+     * @return 阶段结束时传给对应的方法
+     */
+    default Span begin(Phase phase) {
+        return new Span();
+    }
+
+    /**
+     * 列出一个类路径根下的资源
+     * @param root 类路径根，目录的绝对路径或者jar:file:/x.jar!
+     * @param source 资源列表的来源：index、cache、scan
+     * @param span begin(Phase.SCAN_ROOT)的结果
+     * @param visited 列出的资源数
+     */
+    default void rootScanned(String root, String source, Span span, int visited) {
+    }
+
+    /**
+     * 类路径根下被mapper选中（返回非null）的资源数
+     */
+    default void rootMatched(String root, int matched) {
+    }
+
+    /**
+     * 一次完整的扫描
+     * @param basePackage 扫描的包
+     * @param span begin(Phase.SCAN)的结果，耗时包括mapper
+     * @param visited 列出的资源数
+     * @param matched 选中的资源数
+     */
+    default void scanCompleted(String basePackage, Span span, int visited, int matched) {
+    }
+
+    /**
+     * 通过ClassPathUtils读取的字节数
+     */
+    default void bytesRead(String path, long bytes) {
+    }
+
+    /**
+     * 解析一个配置文件
+     * @param source 配置文件名
+     * @param span begin(Phase.CONFIG_SOURCE)的结果，耗时包括读取
+     * @param keys 解析出的key数
+     */
+    default void configParsed(String source, Span span, int keys) {
+    }
+
+    /**
+     * 一次完整的配置加载
+     * @param span begin(Phase.CONFIG_LOAD)的结果
+     * @param sources 配置来源的层数
+     */
+    default void configLoaded(Span span, int sources) {
+    }
+
+    /**
+     * PropertyResolver按key查找原始值
+     * @param found key是否存在
+     */
+    default void propertyLookup(boolean found) {
+    }
+
+    /**
+     * 一次包含占位符的求值
+     * @param depth 占位符嵌套解析的最大深度，${a}引用的值中再有${b}时为2
+     */
+    default void placeholderResolved(int depth) {
+    }
+}
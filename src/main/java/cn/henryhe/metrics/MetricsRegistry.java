@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.metrics;
+
+/**
+ * 当前使用的Metrics实现，默认为DefaultMetrics
+ * 埋点处每次读取一次volatile字段，替换后立即生效
+ */
+public final class MetricsRegistry {
+
+    private static final DefaultMetrics DEFAULT = new DefaultMetrics();
+
+    private static volatile Metrics current = DEFAULT;
+
+    private MetricsRegistry() {
+    }
+
+    public static Metrics get() {
+        return current;
+    }
+
+    /**
+     * 替换实现，传入null时恢复默认实现；不需要埋点时可以设置为Metrics.NOOP
+     * @param metrics
+     */
+    public static void set(Metrics metrics) {
+        current = metrics == null ? DEFAULT : metrics;
+    }
+
+    /**
+     * 默认实现，即使已经被替换也可以读取其中的数据
+     * @return
+     */
+    public static DefaultMetrics getDefault() {
+        return DEFAULT;
+    }
+}
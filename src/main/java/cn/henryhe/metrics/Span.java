@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Henry HE (henryhe.cn)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cn.henryhe.metrics;
+
+/**
+ * 一个阶段的计时，由Metrics.begin在阶段开始时创建，阶段结束时传给对应的方法
+ * DefaultMetrics同时在其中保存阶段开始时begin()的JFR事件，结束时提交，JMC中显示为时间段
+ */
+public final class Span {
+
+    private final long start = System.nanoTime();
+
+    /**
+     * 已经begin()的JFR事件，不支持JFR或者未开启录制时为null
+     */
+    final Object event;
+
+    public Span() {
+        this(null);
+    }
+
+    Span(Object event) {
+        this.event = event;
+    }
+
+    /**
+     * 从阶段开始到现在的耗时，纳秒
+     * @return
+     */
+    public long elapsed() {
+        return System.nanoTime() - start;
+    }
+}
@@ -25,17 +25,61 @@
 package cn.henryhe.utils;
 
 import cn.henryhe.io.InputStreamCallback;
+import cn.henryhe.io.JarFileCache;
+import cn.henryhe.metrics.MetricsRegistry;
 
 import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
-
+/**
+ * 类路径文件读取
+ * file:和jar:资源的大小事先已知，按大小一次读取，不经过ByteArrayOutputStream反复复制：
+ * - 本地文件：FileChannel读入大小正好的数组，大文件读取字符串时直接映射后解码
+ * - jar包：通过共享的JarFileCache打开，按条目大小分配数组
+ * - 读取小文件的字符串时复用线程本地的缓冲区
+ * xxxAsync在IoExecutor上执行，任务中使用调用方线程的ContextClassLoader；readAll同时读取多个文件
+ * 读取的字节数记录到MetricsRegistry，按流读取时只统计回调实际读取的部分
+ */
 public class ClassPathUtils {
 
+    /**
+     * 超过该大小的文件读取字符串时使用mmap
+     */
+    private static final int MAP_THRESHOLD = 1 << 20;
+
+    /**
+     * 不超过该大小的文件读取字符串时使用线程本地缓冲区
+     */
+    private static final int SMALL_FILE_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(SMALL_FILE_SIZE);
+        }
+    };
+
     public static <T> T readInputStream(String filePath, InputStreamCallback<T> inputStreamCallback) {
         if (filePath.startsWith("/")) {
             filePath = filePath.substring(1);
@@ -44,7 +88,10 @@ public class ClassPathUtils {
             if (input == null) {
                 throw new FileNotFoundException("File not found: " + filePath);
             }
-            return inputStreamCallback.doWithInputStream(input);
+            CountingInputStream counting = new CountingInputStream(input);
+            T result = inputStreamCallback.doWithInputStream(counting);
+            MetricsRegistry.get().bytesRead(filePath, counting.count);
+            return result;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -56,40 +103,234 @@ public class ClassPathUtils {
      * @return
      */
     public static String readString(String filePath) {
-        return readInputStream(filePath, (input) -> {
-            byte [] data = readAllBytes(input);
-            return new String(data, StandardCharsets.UTF_8);
-        });
+        URL url = getResource(filePath);
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(toPath(url), StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    MetricsRegistry.get().bytesRead(filePath, size);
+                    if (size <= SMALL_FILE_SIZE && !IoExecutor.isVirtualThread()) {
+                        ByteBuffer buffer = BUFFERS.get();
+                        // 通过Buffer调用，JDK 9+编译时不会链接到Java 8中不存在的ByteBuffer协变方法
+                        ((Buffer) buffer).clear();
+                        readFully(channel, buffer, (int) size);
+                        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                    }
+                    if (size > MAP_THRESHOLD) {
+                        // 直接从映射的内存解码
+                        return StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString();
+                    }
+                    return new String(read(channel, size), StandardCharsets.UTF_8);
+                }
+            }
+            byte[] bytes = readAllBytes(url);
+            MetricsRegistry.get().bytesRead(filePath, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-
-    public static byte[] readAllBytes(InputStream inputStream) throws IOException {
-        final int bufLen = 4 * 0x400;
-        byte[] buf = new byte[bufLen];
-        int readLen;
-        IOException exception = null;
+    /**
+     * 类路径文件读取为字节数组
+     * @param filePath
+     * @return
+     */
+    public static byte[] readAllBytes(String filePath) {
         try {
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                while ((readLen = inputStream.read(buf, 0, bufLen)) != -1)
-                    outputStream.write(buf, 0, readLen);            return outputStream.toByteArray();        }
+            byte[] bytes = readAllBytes(getResource(filePath));
+            MetricsRegistry.get().bytesRead(filePath, bytes.length);
+            return bytes;
         } catch (IOException e) {
-            exception = e;        throw e;    } finally {
-            if (exception == null) inputStream.close();        else try {
-                inputStream.close();        } catch (IOException e) {
-                exception.addSuppressed(e);        }
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] readAllBytes(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel channel = FileChannel.open(toPath(url), StandardOpenOption.READ)) {
+                return read(channel, channel.size());
+            }
+        }
+        if ("jar".equals(url.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) url.openConnection();
+            URL jarFileUrl = connection.getJarFileURL();
+            if ("file".equals(jarFileUrl.getProtocol())) {
+                try (JarFileCache.Handle handle = JarFileCache.shared().acquire(toPath(jarFileUrl))) {
+                    JarFile jarFile = handle.getJarFile();
+                    JarEntry entry = jarFile.getJarEntry(connection.getEntryName());
+                    if (entry == null) {
+                        throw new FileNotFoundException("File not found: " + url);
+                    }
+                    try (InputStream input = jarFile.getInputStream(entry)) {
+                        return readAllBytes(input, entry.getSize());
+                    }
+                }
+            }
+        }
+        return readAllBytes(url.openStream());
+    }
+
+    /**
+     * 读取全部内容并关闭输入流
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        try (InputStream input = inputStream) {
+            return readAllBytes(input, -1);
+        }
+    }
+
+    /**
+     * @param expectedSize 已知的大小，未知时为-1；大小正确时只复制一次
+     */
+    private static byte[] readAllBytes(InputStream input, long expectedSize) throws IOException {
+        if (expectedSize > Integer.MAX_VALUE - 8) {
+            throw new IOException("File too large: " + expectedSize);
+        }
+        byte[] buf = new byte[expectedSize >= 0 ? (int) expectedSize : 4 * 0x400];
+        int length = 0;
+        while (true) {
+            if (length == buf.length) {
+                // 已知大小时确认已经读完
+                int next = input.read();
+                if (next < 0) {
+                    return buf;
+                }
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, 4 * 0x400));
+                buf[length++] = (byte) next;
+            }
+            int n = input.read(buf, length, buf.length - length);
+            if (n < 0) {
+                return length == buf.length ? buf : Arrays.copyOf(buf, length);
+            }
+            length += n;
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("File too large: " + size);
+        }
+        byte[] bytes = new byte[(int) size];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        readFully(channel, buffer, (int) size);
+        return buffer.position() == bytes.length ? bytes : Arrays.copyOf(bytes, buffer.position());
+    }
+
+    /**
+     * 读取到文件末尾或者读满size字节
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        ((Buffer) buffer).limit(buffer.position() + size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
         }
     }
 
+    /**
+     * 读取.properties，所有加载配置的入口统一使用：按Properties.load(InputStream)的规则以ISO-8859-1解码，
+     * 其他字符需要写成unicode转义，例如 caf\u00e9
+     * @param input 不会被关闭
+     * @param target 结果写入target
+     * @throws IOException
+     */
+    public static void loadProperties(InputStream input, Properties target) throws IOException {
+        target.load(input);
+    }
+
     public static Properties readPropertiesByName(String name) {
         Properties properties = new Properties();
         try (InputStream inputStream = getContextClassLoader().getResourceAsStream(name)) {
-            properties.load(inputStream);
+            CountingInputStream counting = inputStream == null ? null : new CountingInputStream(inputStream);
+            loadProperties(counting, properties);
+            MetricsRegistry.get().bytesRead(name, counting.count);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
         return properties;
     }
 
+    public static <T> CompletableFuture<T> readInputStreamAsync(String filePath, InputStreamCallback<T> inputStreamCallback) {
+        return supplyAsync(() -> readInputStream(filePath, inputStreamCallback), IoExecutor.shared());
+    }
+
+    public static CompletableFuture<String> readStringAsync(String filePath) {
+        return supplyAsync(() -> readString(filePath), IoExecutor.shared());
+    }
+
+    public static CompletableFuture<byte[]> readAllBytesAsync(String filePath) {
+        return supplyAsync(() -> readAllBytes(filePath), IoExecutor.shared());
+    }
+
+    public static CompletableFuture<Properties> readPropertiesByNameAsync(String name) {
+        return supplyAsync(() -> readPropertiesByName(name), IoExecutor.shared());
+    }
+
+    /**
+     * 同时读取多个文件为字符串，结果按paths的顺序排列，任意一个文件读取失败时整体失败
+     * @param paths
+     * @return
+     */
+    public static CompletableFuture<Map<String, String>> readAll(Collection<String> paths) {
+        return readAll(paths, IoExecutor.shared());
+    }
+
+    public static CompletableFuture<Map<String, String>> readAll(Collection<String> paths, Executor executor) {
+        List<String> keys = new ArrayList<>(paths);
+        List<CompletableFuture<String>> futures = new ArrayList<>(keys.size());
+        for (String path : keys) {
+            futures.add(supplyAsync(() -> readString(path), executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, String> contents = new LinkedHashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                contents.put(keys.get(i), futures.get(i).join());
+            }
+            return contents;
+        });
+    }
+
+    /**
+     * 在executor上执行，任务期间把工作线程的ContextClassLoader切换为调用方的
+     */
+    private static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        ClassLoader cl = getContextClassLoader();
+        return CompletableFuture.supplyAsync(() -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader original = thread.getContextClassLoader();
+            thread.setContextClassLoader(cl);
+            try {
+                return supplier.get();
+            } finally {
+                thread.setContextClassLoader(original);
+            }
+        }, executor);
+    }
+
+    private static URL getResource(String filePath) {
+        if (filePath.startsWith("/")) {
+            filePath = filePath.substring(1);
+        }
+        URL url = getContextClassLoader().getResource(filePath);
+        if (url == null) {
+            throw new RuntimeException(new FileNotFoundException("File not found: " + filePath));
+        }
+        return url;
+    }
+
+    private static Path toPath(URL url) throws IOException {
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
     private static ClassLoader getContextClassLoader() {
         ClassLoader cl = null;
         cl = Thread.currentThread().getContextClassLoader();
@@ -98,4 +339,41 @@ public class ClassPathUtils {
         }
         return cl;
     }
+
+    /**
+     * 统计读取的字节数
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
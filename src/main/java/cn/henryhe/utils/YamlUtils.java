@@ -25,38 +25,444 @@
 package cn.henryhe.utils;
 
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
 
+import java.io.InputStream;
+import java.math.BigInteger;
 import java.util.*;
 
 /**
  * 提供yaml配置读取
+ * 基于SnakeYAML的事件流解析，边读边写入扁平化的 app.version 类型的key，不构建完整的对象树
+ * - 多文档（---分隔）：后面的文档覆盖前面的
+ * - 列表：servers[0].host，同时servers本身保存为不可修改的List，元素为标量、Map或List
+ * - 锚点和别名（&base / *base / <<: *base）：记录锚点下的扁平化结果，在别名处重放
+ * - 合并（<<）：映射结束时才写入，映射中显式的key优先，<<: [*a, *b]中前面的优先
+ * - 标量保持yaml解析的类型：Integer/Long/BigInteger、Double、Boolean，其他为字符串，null值为空字符串
+ * - 时间戳保留原文，getProperty得到的仍是配置中的写法，按Instant/Date读取时由ConverterRegistry解析
  */
 public class YamlUtils {
 
+    private static final String MERGE_KEY = "<<";
+
+    private static final Resolver RESOLVER = new Resolver();
+
     public static Map<String, Object> loadYamlAsPlainMap(String name) {
-        Yaml yaml = new Yaml();
-        HashMap<String, Object> data = yaml.loadAs(ClassPathUtils.readString(name), HashMap.class);
-        HashMap<String, Object> plainMap = new LinkedHashMap<>();
-        convertToPlainMap(data, "", plainMap);
+        return ClassPathUtils.readInputStream(name, YamlUtils::loadYamlAsPlainMap);
+    }
+
+    /**
+     * 从输入流读取，用于类路径之外的配置文件
+     * @param input
+     * @return
+     */
+    public static Map<String, Object> loadYamlAsPlainMap(InputStream input) {
+        Map<String, Object> plainMap = new LinkedHashMap<>();
+        loadYaml(input, plainMap);
         return plainMap;
     }
 
     /**
-     * 解析的Map对象 扁平化为 app.version类型的key
-     * @param data
-     * @param prefix
-     * @param plainMap
+     * 把扁平化的结果直接写入target，已存在的key被覆盖
+     * @param input 不会被关闭
+     * @param target
+     */
+    public static void loadYaml(InputStream input, Map<String, Object> target) {
+        Flattener flattener = new Flattener(target);
+        for (Event event : new Yaml().parse(new UnicodeReader(input))) {
+            flattener.accept(event);
+        }
+    }
+
+    /**
+     * 事件流到扁平key的状态机
      */
-    private static void convertToPlainMap(HashMap<String, Object> data, String prefix, HashMap<String, Object> plainMap) {
-        for (String key : data.keySet()) {
-            Object valueObject = data.get(key);
-            if (HashMap.class.isInstance(valueObject)) {
-                convertToPlainMap((HashMap<String, Object>) valueObject, key + ".", plainMap);
-            } else if (valueObject instanceof List){
-                plainMap.put(prefix + key, valueObject);
+    private static final class Flattener {
+
+        private final Map<String, Object> target;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        /**
+         * 锚点 -> 相对于锚点节点的扁平化结果
+         */
+        private final Map<String, List<Map.Entry<String, Object>>> anchors = new HashMap<>();
+        /**
+         * 锚点 -> 节点的值，用于列表中的别名
+         */
+        private final Map<String, Object> anchorValues = new HashMap<>();
+        private final List<Recording> recordings = new ArrayList<>();
+        /**
+         * <<: {...} 中内联映射的扁平化结果，暂不写入target，由所在映射结束时合并
+         */
+        private final Deque<Recording> captures = new ArrayDeque<>();
+
+        Flattener(Map<String, Object> target) {
+            this.target = target;
+        }
+
+        @SuppressWarnings("unchecked")
+        void accept(Event event) {
+            if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                Frame frame = frames.pop();
+                if (frame.mapping) {
+                    applyMerges(frame);
+                }
+                if (frame.mergeInto != null && frame.mapping) {
+                    frame.mergeInto.addMerge(captures.pop().entries);
+                }
+                if (!frame.merge) {
+                    Object value = null;
+                    if (frame.mapping && frame.container != null) {
+                        value = Collections.unmodifiableMap((Map<String, Object>) frame.container);
+                    } else if (!frame.mapping) {
+                        value = Collections.unmodifiableList((List<Object>) frame.container);
+                        emit(frame.path, value);
+                    }
+                    if (frame.recording != null) {
+                        frame.recording.value = value;
+                    }
+                    addToParent(frames.peek(), value);
+                }
+                endRecording(frame.recording);
+                valueDone();
+            } else if (event instanceof DocumentStartEvent) {
+                // 锚点只在文档内有效
+                frames.clear();
+                captures.clear();
+                anchors.clear();
+                anchorValues.clear();
+            } else if (event instanceof NodeEvent) {
+                Frame parent = frames.peek();
+                if (parent != null && parent.mapping && parent.key == null) {
+                    // 映射中的key，只支持标量
+                    if (!(event instanceof ScalarEvent)) {
+                        throw new IllegalArgumentException("Unsupported yaml key: " + event);
+                    }
+                    parent.key = ((ScalarEvent) event).getValue();
+                    if (!MERGE_KEY.equals(parent.key)) {
+                        parent.addKey(parent.key);
+                    }
+                    return;
+                }
+                node((NodeEvent) event, parent);
+            }
+        }
+
+        private void node(NodeEvent event, Frame parent) {
+            boolean merge = parent != null && (parent.merge || (parent.mapping && MERGE_KEY.equals(parent.key)));
+            // 合并的内容写入所在映射本身
+            String path = merge ? parent.path : childPath(parent);
+            Frame owner = merge ? (parent.merge ? parent.mergeInto : parent) : null;
+            if (event instanceof AliasEvent) {
+                List<Map.Entry<String, Object>> entries = anchors.get(event.getAnchor());
+                if (entries == null) {
+                    throw new IllegalArgumentException("Unknown yaml anchor: " + event.getAnchor());
+                }
+                if (merge) {
+                    owner.addMerge(entries);
+                } else {
+                    for (Map.Entry<String, Object> entry : entries) {
+                        emit(join(path, entry.getKey()), entry.getValue());
+                    }
+                }
+                addToParent(parent, anchorValues.get(event.getAnchor()));
+                valueDone();
+                return;
+            }
+            if (merge && event instanceof MappingStartEvent) {
+                // 在锚点之前开始，锚点记录的是同一层的结果
+                captures.push(new Recording(null, path, captures.size() + 1));
+            }
+            Recording recording = event.getAnchor() == null ? null : startRecording(event.getAnchor(), path);
+            // 列表中的节点（以及带锚点的节点）需要构建结构化的值，其他映射只输出扁平key
+            boolean collect = (parent != null && parent.container != null) || recording != null;
+            if (event instanceof ScalarEvent) {
+                Object value = scalar((ScalarEvent) event);
+                emit(path, value);
+                if (recording != null) {
+                    recording.value = value;
+                }
+                endRecording(recording);
+                addToParent(parent, value);
+                valueDone();
+            } else if (event instanceof MappingStartEvent) {
+                Frame frame = new Frame(true, path, false, recording, collect ? new LinkedHashMap<String, Object>() : null);
+                frame.mergeInto = owner;
+                frames.push(frame);
+            } else if (event instanceof SequenceStartEvent) {
+                if (merge) {
+                    // <<: [*a, *b]，合并到所在的映射
+                    Frame frame = new Frame(false, path, true, recording, parent.container);
+                    frame.mergeInto = owner;
+                    frames.push(frame);
+                } else {
+                    frames.push(new Frame(false, path, false, recording, new ArrayList<>()));
+                }
+            }
+        }
+
+        private static String childPath(Frame parent) {
+            if (parent == null) {
+                return "";
+            }
+            if (parent.mapping) {
+                return join(parent.path, parent.key);
+            }
+            return parent.path + "[" + parent.index + "]";
+        }
+
+        /**
+         * 把子节点的值加入正在构建的列表或映射
+         */
+        @SuppressWarnings("unchecked")
+        private static void addToParent(Frame parent, Object value) {
+            if (parent == null || parent.container == null || value == null) {
+                return;
+            }
+            if (parent.merge || (parent.mapping && MERGE_KEY.equals(parent.key))) {
+                if (value instanceof Map) {
+                    // 显式的key在之后写入时覆盖，之前写入的以及前面的别名保留
+                    Map<String, Object> container = (Map<String, Object>) parent.container;
+                    for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                        container.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+            } else if (parent.mapping) {
+                ((Map<String, Object>) parent.container).put(parent.key, value);
+            } else {
+                ((List<Object>) parent.container).add(value);
+            }
+        }
+
+        /**
+         * 当前节点处理完：映射等待下一个key，列表下标加一
+         */
+        private void valueDone() {
+            Frame parent = frames.peek();
+            if (parent != null) {
+                if (parent.mapping) {
+                    parent.key = null;
+                } else {
+                    parent.index++;
+                }
+            }
+        }
+
+        private void emit(String key, Object value) {
+            int level = captures.size();
+            if (level == 0) {
+                target.put(key, value);
             } else {
-                plainMap.put(prefix + key, valueObject.toString());
+                Recording capture = captures.peek();
+                capture.entries.add(new AbstractMap.SimpleImmutableEntry<>(key.substring(capture.path.length()), value));
+            }
+            for (Recording recording : recordings) {
+                // 外层的锚点在合并时才得到被选中的结果
+                if (recording.level == level) {
+                    recording.entries.add(new AbstractMap.SimpleImmutableEntry<>(key.substring(recording.path.length()), value));
+                }
+            }
+        }
+
+        /**
+         * 映射结束时写入合并的内容：映射中已有的key跳过，前面的来源占用的key后面的来源跳过
+         * 合并是浅层的，按第一段key判断，例如映射中有db时，别名中的db.host、db.port都跳过
+         */
+        private void applyMerges(Frame frame) {
+            if (frame.merges == null) {
+                return;
+            }
+            Set<String> taken = frame.keys == null ? new HashSet<>() : new HashSet<>(frame.keys);
+            for (List<Map.Entry<String, Object>> source : frame.merges) {
+                List<String> added = new ArrayList<>();
+                for (Map.Entry<String, Object> entry : source) {
+                    String segment = firstSegment(entry.getKey());
+                    if (!taken.contains(segment)) {
+                        emit(join(frame.path, entry.getKey()), entry.getValue());
+                        added.add(segment);
+                    }
+                }
+                taken.addAll(added);
+            }
+        }
+
+        /**
+         * .db.host -> db，.list[0] -> list
+         */
+        private static String firstSegment(String relativeKey) {
+            int start = relativeKey.startsWith(".") ? 1 : 0;
+            int end = start;
+            while (end < relativeKey.length() && relativeKey.charAt(end) != '.' && relativeKey.charAt(end) != '[') {
+                end++;
+            }
+            return relativeKey.substring(start, end);
+        }
+
+        private Recording startRecording(String anchor, String path) {
+            Recording recording = new Recording(anchor, path, captures.size());
+            recordings.add(recording);
+            return recording;
+        }
+
+        private void endRecording(Recording recording) {
+            if (recording != null) {
+                recordings.remove(recording);
+                anchors.put(recording.anchor, recording.entries);
+                anchorValues.put(recording.anchor, recording.value);
+            }
+        }
+
+        /**
+         * a + .b -> a.b，a + [0] -> a[0]，"" + .b -> b
+         */
+        private static String join(String path, String suffix) {
+            if (path.isEmpty()) {
+                return suffix.startsWith(".") ? suffix.substring(1) : suffix;
+            }
+            if (suffix.isEmpty() || suffix.startsWith(".") || suffix.startsWith("[")) {
+                return path + suffix;
+            }
+            return path + "." + suffix;
+        }
+
+        /**
+         * 只有未加引号、未显式指定tag的标量才按yaml规则解析类型
+         */
+        private static Object scalar(ScalarEvent event) {
+            String value = event.getValue();
+            if (!event.getImplicit().canOmitTagInPlainScalar()) {
+                return value;
+            }
+            Tag tag = RESOLVER.resolve(NodeId.scalar, value, true);
+            try {
+                if (tag == Tag.NULL) {
+                    return "";
+                } else if (tag == Tag.BOOL) {
+                    String lower = value.toLowerCase(Locale.ROOT);
+                    return "true".equals(lower) || "yes".equals(lower) || "on".equals(lower);
+                } else if (tag == Tag.INT) {
+                    return parseInt(value);
+                } else if (tag == Tag.FLOAT) {
+                    return parseFloat(value);
+                }
+            } catch (NumberFormatException e) {
+                // 六十进制等少见的写法保留原文
+            }
+            return value;
+        }
+
+        /**
+         * 0b1010、0x1F、0755、1_000，按大小返回Integer、Long或BigInteger
+         */
+        private static Object parseInt(String value) {
+            String s = value.replace("_", "");
+            boolean negative = s.startsWith("-");
+            if (negative || s.startsWith("+")) {
+                s = s.substring(1);
+            }
+            int radix = 10;
+            if (s.startsWith("0b")) {
+                radix = 2;
+                s = s.substring(2);
+            } else if (s.startsWith("0x")) {
+                radix = 16;
+                s = s.substring(2);
+            } else if (s.length() > 1 && s.startsWith("0")) {
+                radix = 8;
+                s = s.substring(1);
+            }
+            BigInteger number = new BigInteger(negative ? "-" + s : s, radix);
+            if (number.bitLength() < 32) {
+                return number.intValue();
+            }
+            if (number.bitLength() < 64) {
+                return number.longValue();
             }
+            return number;
+        }
+
+        private static Object parseFloat(String value) {
+            String s = value.replace("_", "");
+            String lower = s.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".inf")) {
+                return lower.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            if (lower.equals(".nan")) {
+                return Double.NaN;
+            }
+            return Double.valueOf(s);
+        }
+    }
+
+    private static final class Frame {
+
+        final boolean mapping;
+        final String path;
+        /**
+         * 是否为 <<: [*a, *b] 中的列表
+         */
+        final boolean merge;
+        final Recording recording;
+        /**
+         * 正在构建的List或Map，不需要结构化的值时为null
+         */
+        final Object container;
+        String key;
+        int index;
+        /**
+         * <<下的节点所属的映射
+         */
+        Frame mergeInto;
+        /**
+         * 映射中显式出现的key
+         */
+        Set<String> keys;
+        /**
+         * 待合并的来源，按出现顺序
+         */
+        List<List<Map.Entry<String, Object>>> merges;
+
+        Frame(boolean mapping, String path, boolean merge, Recording recording, Object container) {
+            this.mapping = mapping;
+            this.path = path;
+            this.merge = merge;
+            this.recording = recording;
+            this.container = container;
+        }
+
+        void addKey(String key) {
+            if (keys == null) {
+                keys = new HashSet<>();
+            }
+            keys.add(key);
+        }
+
+        void addMerge(List<Map.Entry<String, Object>> entries) {
+            if (merges == null) {
+                merges = new ArrayList<>(2);
+            }
+            merges.add(entries);
+        }
+    }
+
+    private static final class Recording {
+
+        final String anchor;
+        final String path;
+        /**
+         * 开始时所在的captures层数，只记录同一层写入的结果
+         */
+        final int level;
+        final List<Map.Entry<String, Object>> entries = new ArrayList<>();
+        Object value;
+
+        Recording(String anchor, String path, int level) {
+            this.anchor = anchor;
+            this.path = path;
+            this.level = level;
         }
     }
 }
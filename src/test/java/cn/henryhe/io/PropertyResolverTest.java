@@ -24,15 +24,41 @@
 
 package cn.henryhe.io;
 
+import cn.henryhe.metrics.DefaultMetrics;
+import cn.henryhe.metrics.Metrics;
+import cn.henryhe.metrics.MetricsRegistry;
+import cn.henryhe.metrics.Span;
 import cn.henryhe.utils.ClassPathUtils;
 import cn.henryhe.utils.YamlUtils;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import mockit.Deencapsulation;
 import mockit.Tested;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.Reader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class PropertyResolverTest {
     @Tested
@@ -70,6 +96,16 @@ public class PropertyResolverTest {
         propertyResolver = new PropertyResolver(properties);
         Assert.assertTrue(Integer.class.isInstance(propertyResolver.getProperty("timeout", Integer.class)));
         Assert.assertEquals(Optional.of(1722222222).get(), propertyResolver.getProperty("timeout", Integer.class));
+
+        // 不存在的key只缓存有限个，存在的key始终缓存
+        for (int i = 0; i < PropertyResolver.MAX_CACHED_MISSES * 2; i++) {
+            Assert.assertNull(propertyResolver.getProperty("missing." + i));
+            Assert.assertNull(propertyResolver.getProperty("missing." + i, Integer.class));
+        }
+        Assert.assertEquals("henryhe", propertyResolver.getProperty("name"));
+        Map<String, Object> lookups = Deencapsulation.getField(propertyResolver.snapshot(), "lookups");
+        Assert.assertTrue(lookups.size() <= PropertyResolver.MAX_CACHED_MISSES + properties.size());
+        Assert.assertEquals("henryhe", lookups.get("name"));
     }
 
     @Test
@@ -81,4 +117,667 @@ public class PropertyResolverTest {
         Assert.assertEquals("1.0.0", propertyResolver.getProperty("${app.version}"));
         Assert.assertTrue(propertyResolver.getProperty("app.position").contains("home"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLoadYamlMultiDocument() throws Exception {
+        Map<String, Object> dataMap = YamlUtils.loadYamlAsPlainMap("multi-document.yaml");
+        // 后面的文档覆盖前面的
+        Assert.assertEquals("2.0.0", dataMap.get("app.version"));
+        Assert.assertEquals("demo", dataMap.get("app.name"));
+        Assert.assertEquals("", dataMap.get("app.description"));
+        Assert.assertEquals(8, dataMap.get("app.datasource.pool.size"));
+        Assert.assertEquals("a.example.com", dataMap.get("servers[0].host"));
+        Assert.assertEquals(8081, dataMap.get("servers[1].port"));
+        Assert.assertEquals("green", dataMap.get("servers[1].tags[1]"));
+        Assert.assertEquals(Arrays.asList("blue", "green"), dataMap.get("servers[1].tags"));
+        List<?> servers = (List<?>) dataMap.get("servers");
+        Assert.assertEquals(2, servers.size());
+        Assert.assertEquals(8080, ((Map<?, ?>) servers.get(0)).get("port"));
+        // 锚点合并，显式的key覆盖合并的值
+        Assert.assertEquals("30s", dataMap.get("dev.timeout"));
+        Assert.assertEquals(5, dataMap.get("dev.retries"));
+        Assert.assertEquals(3, dataMap.get("defaults.retries"));
+        Assert.assertFalse(dataMap.containsKey("dev.<<"));
+    }
+
+    @Test
+    public void testYamlMergePrecedence() throws Exception {
+        String yaml = String.join("\n",
+                "b: &b {port: 1, db: {host: b, pool: 4}}",
+                "o: &o {port: 3, name: o}",
+                "svc:",
+                "  port: 2",
+                "  db: {host: svc}",
+                "  <<: *b",
+                "multi:",
+                "  <<: [*b, *o]",
+                "inline:",
+                "  <<: {port: 5, name: inline}",
+                "  name: explicit",
+                "list:",
+                "  - port: 2",
+                "    <<: *b");
+        Map<String, Object> dataMap = YamlUtils.loadYamlAsPlainMap(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+        // 合并在显式的key之后，显式的key优先
+        Assert.assertEquals(2, dataMap.get("svc.port"));
+        // 浅层合并：svc中已有db，别名中的db整体跳过
+        Assert.assertEquals("svc", dataMap.get("svc.db.host"));
+        Assert.assertFalse(dataMap.containsKey("svc.db.pool"));
+        // 多个别名时前面的优先
+        Assert.assertEquals(1, dataMap.get("multi.port"));
+        Assert.assertEquals("o", dataMap.get("multi.name"));
+        Assert.assertEquals(5, dataMap.get("inline.port"));
+        Assert.assertEquals("explicit", dataMap.get("inline.name"));
+        // 列表中的结构化值同样适用
+        Assert.assertEquals(2, dataMap.get("list[0].port"));
+        Assert.assertEquals(2, ((Map<?, ?>) ((List<?>) dataMap.get("list")).get(0)).get("port"));
+        Assert.assertEquals(4, dataMap.get("list[0].db.pool"));
+    }
+
+    @Test
+    public void testTypedYamlValues() throws Exception {
+        Map<String, Object> dataMap = YamlUtils.loadYamlAsPlainMap("multi-document.yaml");
+        propertyResolver = new PropertyResolver(Collections.singletonList(
+                new MapPropertySource(PropertyResolver.APPLICATION_SOURCE, dataMap)), new ConverterRegistry());
+        // 原始类型直接使用
+        Assert.assertSame(dataMap.get("servers[0].port"), propertyResolver.getProperty("servers[0].port", Integer.class));
+        Assert.assertEquals(8080L, propertyResolver.getLong("servers[0].port"));
+        Assert.assertEquals(8080.0, propertyResolver.getDouble("servers[0].port"), 0);
+        Assert.assertEquals("8080", propertyResolver.getProperty("servers[0].port"));
+        Assert.assertEquals(Duration.ofSeconds(30), propertyResolver.getDuration("dev.timeout"));
+        // 列表
+        Assert.assertEquals(Arrays.asList("blue", "green"), propertyResolver.getList("servers[1].tags", String.class));
+        Assert.assertEquals("blue,green", propertyResolver.getProperty("servers[1].tags"));
+        Assert.assertNull(propertyResolver.getList("servers[0].tags", String.class));
+        ServerGroup group = propertyResolver.bind("servers[1]", ServerGroup.class);
+        Assert.assertEquals(Arrays.asList("blue", "green"), group.getTags());
+        Assert.assertEquals(8081, group.getPort());
+
+        // 时间戳保留原文，按Instant/Date读取时解析
+        dataMap = YamlUtils.loadYamlAsPlainMap(new ByteArrayInputStream(String.join("\n",
+                "day: 2002-12-14", "canonical: 2001-12-15T02:59:43.1Z", "spaced: 2001-12-14 21:59:43.10 -5", "local: 2001-12-14t21:59:43.10+05:30").getBytes(StandardCharsets.UTF_8)));
+        propertyResolver = new PropertyResolver(Collections.singletonList(
+                new MapPropertySource(PropertyResolver.APPLICATION_SOURCE, dataMap)), new ConverterRegistry());
+        Assert.assertEquals("2002-12-14", propertyResolver.getProperty("day"));
+        Assert.assertEquals(LocalDate.of(2002, 12, 14), propertyResolver.getProperty("day", LocalDate.class));
+        Assert.assertEquals(Instant.parse("2002-12-14T00:00:00Z"), propertyResolver.getProperty("day", Instant.class));
+        Assert.assertEquals(Instant.parse("2001-12-15T02:59:43.100Z"), propertyResolver.getProperty("canonical", Instant.class));
+        Assert.assertEquals(Instant.parse("2001-12-15T02:59:43.100Z"), propertyResolver.getProperty("spaced", Instant.class));
+        Assert.assertEquals(Instant.parse("2001-12-14T16:29:43.100Z"), propertyResolver.getProperty("local", Instant.class));
+        Assert.assertEquals(Date.from(Instant.parse("2001-12-15T02:59:43.100Z")), propertyResolver.getProperty("spaced", Date.class));
+
+        Properties props = new Properties();
+        props.setProperty("ports", "8080, 8081,8082");
+        propertyResolver = new PropertyResolver(props);
+        Assert.assertEquals(Arrays.asList(8080, 8081, 8082), propertyResolver.getList("ports", Integer.class));
+    }
+
+    @Test
+    public void testBinaryPropertySource() throws Exception {
+        Path root = temporaryFolder.newFolder("snapshot-classpath").toPath();
+        Files.createDirectories(root.resolve("snapshot"));
+        Files.write(root.resolve("snapshot/app.yml"), Arrays.asList(
+                "app:", "  name: demo", "  port: 8080", "  ratio: 0.5", "  debug: true", "  tags: [a, b]", "  size: 9000000000"));
+        Files.write(root.resolve("snapshot/app.properties"), Collections.singletonList("app.name=override"));
+        Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("cache/config.snapshot");
+        List<String> resources = Arrays.asList("snapshot/app.yml", "snapshot/app.properties", "snapshot/app-dev.yml");
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            BinaryPropertySource source = BinaryPropertySource.load(snapshotFile, resources);
+            Assert.assertEquals("override", source.getProperty("app.name"));
+            Assert.assertEquals(8080, source.getValue("app.port"));
+            Assert.assertEquals(0.5, source.getValue("app.ratio"));
+            Assert.assertEquals(Boolean.TRUE, source.getValue("app.debug"));
+            Assert.assertEquals(9000000000L, source.getValue("app.size"));
+            Assert.assertEquals(Arrays.asList("a", "b"), source.getValue("app.tags"));
+            Assert.assertNull(source.getValue("app.missing"));
+            Assert.assertTrue(source.containsPrefix("app.t"));
+            Assert.assertFalse(source.containsPrefix("apps"));
+            Assert.assertEquals(8, source.keys().size());
+
+            propertyResolver = new PropertyResolver(Collections.singletonList(source), new ConverterRegistry());
+            Assert.assertEquals(8080, propertyResolver.getInt("app.port"));
+            Assert.assertEquals(Arrays.asList("a", "b"), propertyResolver.getList("app.tags", String.class));
+            Assert.assertEquals(Arrays.asList("app.debug", "app.name", "app.port", "app.ratio", "app.size", "app.tags", "app.tags[0]", "app.tags[1]"),
+                    new ArrayList<>(propertyResolver.getPropertiesWithPrefix("app.").keySet()));
+
+            // 来源未变化：直接映射，不重新编译
+            FileTime compiledAt = FileTime.fromMillis(1000);
+            Files.setLastModifiedTime(snapshotFile, compiledAt);
+            Assert.assertEquals("override", BinaryPropertySource.load(snapshotFile, resources).getProperty("app.name"));
+            Assert.assertEquals(compiledAt, Files.getLastModifiedTime(snapshotFile));
+
+            // 新增的文件同样触发重新编译
+            Files.write(root.resolve("snapshot/app-dev.yml"), Arrays.asList("app:", "  port: 9090"));
+            Assert.assertEquals(9090, BinaryPropertySource.load(snapshotFile, resources).getValue("app.port"));
+            Assert.assertNotEquals(compiledAt, Files.getLastModifiedTime(snapshotFile));
+
+            // 长度不变但指纹的字符串位置损坏，重新编译
+            byte[] corrupted = Files.readAllBytes(snapshotFile);
+            Arrays.fill(corrupted, 24, 32, (byte) 0xff);
+            Files.write(snapshotFile, corrupted);
+            try {
+                BinaryPropertySource.open(snapshotFile);
+                Assert.fail();
+            } catch (IOException e) {
+                // 打开时检查偏移
+            }
+            Assert.assertEquals(9090, BinaryPropertySource.load(snapshotFile, resources).getValue("app.port"));
+            Assert.assertFalse(Arrays.equals(corrupted, Files.readAllBytes(snapshotFile)));
+
+            // 元素为Map或List的列表与yaml解析的结果一致
+            Files.write(root.resolve("snapshot/servers.yml"), Arrays.asList("servers:", "  - host: a", "    port: 1",
+                    "  - host: b", "    ports: [1, 2]", "    tls: {enabled: true}", "matrix: [[1, 2], [3]]"));
+            Map<String, Object> yaml = YamlUtils.loadYamlAsPlainMap("snapshot/servers.yml");
+            Path serversFile = temporaryFolder.getRoot().toPath().resolve("cache/servers.snapshot");
+            BinaryPropertySource servers = BinaryPropertySource.load(serversFile, Collections.singletonList("snapshot/servers.yml"));
+            Assert.assertEquals(yaml.keySet(), servers.keys());
+            for (Map.Entry<String, Object> entry : yaml.entrySet()) {
+                Assert.assertEquals(entry.getValue(), servers.getValue(entry.getKey()));
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testConfigBootstrap() throws Exception {
+        Path root = temporaryFolder.newFolder("bootstrap-classpath").toPath();
+        Files.createDirectories(root.resolve("boot"));
+        Files.write(root.resolve("boot/config.properties"), Arrays.asList("app.name=base", "app.owner=henry", "app.profiles.active=dev, local"));
+        Files.write(root.resolve("boot/application.yml"), Arrays.asList("app:", "  name: yaml", "  port: 8080", "  timeout: 10"));
+        Files.write(root.resolve("boot/application-dev.yml"), Arrays.asList("app:", "  port: 9090", "  timeout: 20"));
+        Files.write(root.resolve("boot/config-local.properties"), Collections.singletonList("app.timeout=30"));
+        Files.write(root.resolve("boot/application-prod.yml"), Arrays.asList("app:", "  port: 80"));
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            // profile来自基础配置
+            ConfigBootstrap bootstrap = new ConfigBootstrap("boot/config.properties", "boot/application.yml");
+            bootstrap.setIncludeEnvironment(false);
+            propertyResolver = bootstrap.load();
+            Assert.assertEquals(Arrays.asList("boot/config-local.properties", "boot/application-dev.yml", "boot/application.yml", "boot/config.properties"),
+                    propertyResolver.getPropertySources().stream().map(PropertySource::getName).collect(Collectors.toList()));
+            Assert.assertEquals("yaml", propertyResolver.getProperty("app.name"));
+            Assert.assertEquals("henry", propertyResolver.getProperty("app.owner"));
+            Assert.assertEquals(9090, propertyResolver.getInt("app.port"));
+            Assert.assertEquals(30, propertyResolver.getInt("app.timeout"));
+
+            // 指定的profile
+            bootstrap.setProfiles("prod");
+            propertyResolver = bootstrap.load();
+            Assert.assertEquals(80, propertyResolver.getInt("app.port"));
+            Assert.assertEquals(10, propertyResolver.getInt("app.timeout"));
+            Assert.assertEquals("boot/config-prod.properties", ConfigBootstrap.profileName("boot/config.properties", "prod"));
+            Assert.assertEquals("conf.d/app-prod", ConfigBootstrap.profileName("conf.d/app", "prod"));
+
+            // 基础配置只解析一次，不同profile的resolver共享同一批PropertySource
+            List<PropertySource> base = bootstrap.loadBaseAsync().get();
+            PropertyResolver prod = bootstrap.load(base);
+            bootstrap.setProfiles("dev");
+            PropertyResolver dev = bootstrap.load(base);
+            Assert.assertEquals(80, prod.getInt("app.port"));
+            Assert.assertEquals(9090, dev.getInt("app.port"));
+            Assert.assertSame(prod.getPropertySources().get(1), dev.getPropertySources().get(1));
+            Assert.assertSame(base.get(0), dev.getPropertySources().get(2));
+
+            // 与ClassPathUtils.readPropertiesByName相同的解码
+            Files.write(root.resolve("boot/latin.properties"), "app.title=caf\\u00e9 \u00e9".getBytes(StandardCharsets.ISO_8859_1));
+            bootstrap = new ConfigBootstrap("boot/latin.properties");
+            bootstrap.setIncludeEnvironment(false);
+            Assert.assertEquals("caf\u00e9 \u00e9", bootstrap.load().getProperty("app.title"));
+            Assert.assertEquals("caf\u00e9 \u00e9", ClassPathUtils.readPropertiesByName("boot/latin.properties").getProperty("app.title"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testGetPropertyTemplate() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("db.host", "10.0.0.1");
+        properties.setProperty("db.url", "jdbc:mysql://${db.host}:${db.port:3306}/app");
+        properties.setProperty("a:b", "colon");
+        propertyResolver = new PropertyResolver(properties);
+        Assert.assertEquals("10.0.0.1:3306", propertyResolver.getProperty("${db.host:0.0.0.0}:${db.port:3306}"));
+        Assert.assertEquals("jdbc:mysql://10.0.0.1:3306/app", propertyResolver.getProperty("db.url"));
+        Assert.assertEquals("10.0.0.1", propertyResolver.getProperty("${app.host:${db.host}}"));
+        Assert.assertEquals("xxxx", propertyResolver.getProperty("${app.title:APP_NAME:xxxx}"));
+        Assert.assertEquals("http://localhost", propertyResolver.getProperty("${app.url:http\\://localhost}"));
+        Assert.assertEquals("colon", propertyResolver.getProperty("${a\\:b}"));
+        Assert.assertEquals("${unclosed", propertyResolver.getProperty("${unclosed"));
+        Assert.assertNull(propertyResolver.getProperty("app.missing"));
+        try {
+            propertyResolver.getProperty("${app.missing}");
+            Assert.fail();
+        } catch (NullPointerException e) {
+            Assert.assertTrue(e.getMessage().contains("app.missing"));
+        }
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("db.host", "10.0.0.1");
+        properties.setProperty("db.url", "jdbc:mysql://${db.host}:${db.port:3306}/${db.name}");
+        properties.setProperty("db.name", "${app.name:app}");
+        properties.setProperty("db.broken", "${db.missing}");
+        properties.setProperty("chain.0", "x");
+        for (int i = 1; i < 5000; i++) {
+            properties.setProperty("chain." + i, "${chain." + (i - 1) + "}");
+        }
+        for (int i = 0; i < 1000; i++) {
+            properties.setProperty("wide." + i, "${db.host}-" + i);
+        }
+        propertyResolver = new PropertyResolver(properties);
+        propertyResolver.freeze();
+        Assert.assertTrue(propertyResolver.isFrozen());
+        Assert.assertEquals("jdbc:mysql://10.0.0.1:3306/app", propertyResolver.getProperty("db.url"));
+        Assert.assertEquals("x", propertyResolver.getProperty("chain.4999"));
+        Assert.assertEquals("10.0.0.1-999", propertyResolver.getProperty("wide.999"));
+        Assert.assertEquals("10.0.0.1/app", propertyResolver.getProperty("${db.host}/${db.name}"));
+        Assert.assertNull(propertyResolver.getProperty("db.missing"));
+        try {
+            propertyResolver.getProperty("db.broken");
+            Assert.fail();
+        } catch (NullPointerException e) {
+            Assert.assertTrue(e.getMessage().contains("db.missing"));
+        }
+
+        // 冻结后重新加载的配置存在循环引用时保留当前配置
+        Properties cyclic = new Properties();
+        cyclic.setProperty("db.host", "${db.url}");
+        cyclic.setProperty("db.url", "${db.host}");
+        try {
+            propertyResolver.reload(cyclic);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Circular placeholder reference: "));
+        }
+        Assert.assertEquals("10.0.0.1", propertyResolver.getProperty("db.host"));
+
+        // 未冻结时读取也能检测到循环引用
+        cyclic.setProperty("a", "${b}");
+        cyclic.setProperty("b", "${c:${a}}");
+        cyclic.setProperty("self", "prefix-${self}");
+        propertyResolver = new PropertyResolver(cyclic);
+        try {
+            propertyResolver.getProperty("a");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Circular placeholder reference: a -> b -> a", e.getMessage());
+        }
+        try {
+            propertyResolver.getProperty("${self}");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Circular placeholder reference: self -> self", e.getMessage());
+        }
+        try {
+            propertyResolver.freeze();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Circular placeholder reference: "));
+        }
+        Assert.assertFalse(propertyResolver.isFrozen());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        DefaultMetrics metrics = new DefaultMetrics();
+        MetricsRegistry.set(metrics);
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("a", "1");
+            properties.setProperty("b", "${a}");
+            properties.setProperty("c", "${b}-${x:${a}}");
+            propertyResolver = new PropertyResolver(properties);
+            Assert.assertEquals("1-1", propertyResolver.getProperty("c"));
+            Assert.assertNull(propertyResolver.getProperty("missing"));
+            // c、b、a、x、a、missing
+            Assert.assertEquals(6, metrics.getLookups());
+            Assert.assertEquals(2, metrics.getMisses());
+            Assert.assertEquals(1, metrics.getPlaceholderResolutions());
+            Assert.assertEquals(2, metrics.getMaxPlaceholderDepth());
+
+            String content = ClassPathUtils.readString("config.properties");
+            Assert.assertEquals(1, metrics.getFilesRead());
+            Assert.assertEquals(content.getBytes(StandardCharsets.UTF_8).length, metrics.getBytesRead());
+
+            List<Resource> found = new ResourceResolver("cn.henryhe.io").scan(res -> res.getName().endsWith("PropertyResolver.class") ? res : null);
+            Assert.assertEquals(1, found.size());
+            Assert.assertEquals(1, metrics.getScans());
+            Assert.assertFalse(metrics.getRoots().isEmpty());
+            Assert.assertEquals(1, metrics.getRoots().values().stream().mapToLong(DefaultMetrics.RootStats::getMatched).sum());
+            Assert.assertTrue(metrics.getRoots().values().stream().allMatch(stats -> stats.getScans() == 1 && stats.getVisited() > 0));
+
+            metrics.reset();
+            Assert.assertEquals(0, metrics.getLookups());
+            Assert.assertTrue(metrics.getRoots().isEmpty());
+
+            // reload内部的比较、继承转换结果、冻结都不计入查找
+            Assert.assertEquals(1, propertyResolver.getInt("a"));
+            Assert.assertEquals(Integer.valueOf(1), propertyResolver.getProperty("b", Integer.class));
+            Assert.assertEquals("1-1", propertyResolver.getProperty("c", String.class));
+            propertyResolver.freeze();
+            metrics.reset();
+            Properties changed = new Properties();
+            changed.putAll(properties);
+            changed.setProperty("x", "2");
+            propertyResolver.reload(Collections.singletonList(new MapPropertySource("changed", changed)));
+            Assert.assertEquals(0, metrics.getLookups());
+            Assert.assertEquals("1-2", propertyResolver.getProperty("c"));
+
+            // JFR事件覆盖整个阶段
+            if (metrics.isJfrAvailable()) {
+                Path dump = temporaryFolder.newFile("metrics.jfr").toPath();
+                try (Recording recording = new Recording()) {
+                    recording.enable("cn.henryhe.ConfigLoad");
+                    recording.start();
+                    Span span = metrics.begin(Metrics.Phase.CONFIG_LOAD);
+                    Thread.sleep(20);
+                    metrics.configLoaded(span, 1);
+                    recording.stop();
+                    recording.dump(dump);
+                }
+                List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+                Assert.assertEquals(1, events.size());
+                Assert.assertTrue(events.get(0).getDuration().toMillis() >= 20);
+                Assert.assertEquals(1, events.get(0).getInt("sources"));
+            }
+        } finally {
+            MetricsRegistry.set(null);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReload() throws Exception {
+        Path file = temporaryFolder.newFile("reload.properties").toPath();
+        Files.write(file, Arrays.asList("timeout=100", "name=henryhe"));
+        propertyResolver = new PropertyResolver(new Properties());
+        List<Set<String>> changes = new ArrayList<>();
+        propertyResolver.addChangeListener(changes::add);
+
+        PropertyReloader reloader = new PropertyReloader(propertyResolver, Collections.singletonList(file));
+        Assert.assertTrue(reloader.reloadNow());
+        Assert.assertEquals("100", propertyResolver.getProperty("timeout"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("timeout", "name")), changes.get(0));
+
+        Files.write(file, Arrays.asList("timeout=200", "name=henryhe"));
+        reloader.reloadNow();
+        Assert.assertEquals(Integer.valueOf(200), propertyResolver.getProperty("timeout", Integer.class));
+        Assert.assertEquals(Collections.singleton("timeout"), changes.get(1));
+
+        // 内容未变化不通知
+        reloader.reloadNow();
+        Assert.assertEquals(2, changes.size());
+
+        // 引用了变化的key的值同样通知；按ISO-8859-1解码，与初次加载一致
+        Files.write(file, Arrays.asList("timeout=200", "name=henryhe", "host=a", "url=jdbc://${host}", "city=caf\u00e9"), StandardCharsets.ISO_8859_1);
+        reloader.reloadNow();
+        Assert.assertEquals("café", propertyResolver.getProperty("city"));
+        Files.write(file, Arrays.asList("timeout=200", "name=henryhe", "host=b", "url=jdbc://${host}", "city=caf\u00e9"), StandardCharsets.ISO_8859_1);
+        reloader.reloadNow();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("host", "url")), changes.get(3));
+        Assert.assertEquals("jdbc://b", propertyResolver.getProperty("url"));
+    }
+
+    @Test
+    public void testReloaderWatch() throws Exception {
+        Path file = temporaryFolder.newFile("watch.properties").toPath();
+        Files.write(file, Collections.singletonList("timeout=100"));
+        propertyResolver = new PropertyResolver(new Properties());
+        BlockingQueue<Set<String>> changes = new LinkedBlockingQueue<>();
+        propertyResolver.addChangeListener(changes::add);
+
+        try (PropertyReloader reloader = new PropertyReloader(propertyResolver, Collections.singletonList(file))) {
+            reloader.start();
+            Files.write(file, Collections.singletonList("timeout=200"));
+            // 监听线程合并事件后重新加载
+            Assert.assertEquals(Collections.singleton("timeout"), changes.poll(10, TimeUnit.SECONDS));
+            Assert.assertEquals("200", propertyResolver.getProperty("timeout"));
+            // 重复启动无影响
+            reloader.start();
+        }
+    }
+
+    @Test
+    public void testTypedAccessors() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("timeout", "1722222222");
+        properties.setProperty("max", "9000000000");
+        properties.setProperty("ratio", "0.75");
+        properties.setProperty("enabled", "true");
+        properties.setProperty("interval", "500ms");
+        properties.setProperty("ttl", "PT30S");
+        properties.setProperty("buffer", "16KB");
+        propertyResolver = new PropertyResolver(properties);
+        Assert.assertEquals(1722222222, propertyResolver.getInt("timeout"));
+        Assert.assertEquals(9000000000L, propertyResolver.getLong("max"));
+        Assert.assertEquals(0.75, propertyResolver.getDouble("ratio"), 0.0);
+        Assert.assertTrue(propertyResolver.getBoolean("enabled"));
+        Assert.assertEquals(Duration.ofMillis(500), propertyResolver.getDuration("interval"));
+        Assert.assertEquals(Duration.ofSeconds(30), propertyResolver.getDuration("ttl"));
+        Assert.assertEquals(16 * 1024, propertyResolver.getDataSize("buffer"));
+        Assert.assertEquals(42, propertyResolver.getInt("missing", 42));
+        Assert.assertEquals(Long.valueOf(9000000000L), propertyResolver.getProperty("max", Long.class));
+
+        // 值变化后缓存失效
+        properties.setProperty("timeout", "10");
+        propertyResolver.reload(properties);
+        Assert.assertEquals(10, propertyResolver.getInt("timeout"));
+        Assert.assertEquals(9000000000L, propertyResolver.getLong("max"));
+    }
+
+    @Test
+    public void testConverterRegistry() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("unit", "SECONDS");
+        properties.setProperty("price", "9.99");
+        properties.setProperty("at", "2023-01-01T00:00:00Z");
+        properties.setProperty("minutes", "2023-01-01T00:00Z");
+        properties.setProperty("name", "henryhe");
+        propertyResolver = new PropertyResolver(properties);
+        propertyResolver.getConverterRegistry().register(StringBuilder.class, s -> new StringBuilder(s).reverse());
+        Assert.assertEquals(TimeUnit.SECONDS, propertyResolver.getProperty("unit", TimeUnit.class));
+        Assert.assertEquals(new BigDecimal("9.99"), propertyResolver.getProperty("price", BigDecimal.class));
+        Assert.assertEquals(Instant.parse("2023-01-01T00:00:00Z"), propertyResolver.getProperty("at", Instant.class));
+        Assert.assertEquals(Instant.parse("2023-01-01T00:00:00Z"), propertyResolver.getProperty("minutes", Instant.class));
+        Assert.assertEquals("ehyrneh", propertyResolver.getProperty("name", StringBuilder.class).toString());
+        Assert.assertEquals(Optional.of(TimeUnit.SECONDS), propertyResolver.getOptionalProperty("unit", TimeUnit.class));
+        Assert.assertFalse(propertyResolver.getOptionalProperty("missing", TimeUnit.class).isPresent());
+
+        // 第一次转换之后冻结
+        Assert.assertTrue(propertyResolver.getConverterRegistry().isFrozen());
+        try {
+            propertyResolver.getConverterRegistry().register(StringBuilder.class, StringBuilder::new);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // 转换器不会泄漏到其他resolver，StringBuilder回退到String构造方法
+        Assert.assertEquals("henryhe", new PropertyResolver(properties).getProperty("name", StringBuilder.class).toString());
+
+        // 转换器返回null时结果为null，重复读取命中缓存
+        PropertyResolver nullable = new PropertyResolver(properties);
+        nullable.getConverterRegistry().register(StringBuilder.class, s -> null);
+        Assert.assertNull(nullable.getProperty("name", StringBuilder.class));
+        Assert.assertNull(nullable.getProperty("name", StringBuilder.class));
+        Assert.assertFalse(nullable.getOptionalProperty("name", StringBuilder.class).isPresent());
+    }
+    @Test
+    public void testBind() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("db.url", "jdbc:mysql://localhost:3306/test");
+        properties.setProperty("db.max-pool-size", "20");
+        properties.setProperty("db.timeout", "5s");
+        properties.setProperty("db.pool.name", "hikari");
+        properties.setProperty("server.host", "localhost");
+        properties.setProperty("server.port", "8080");
+        propertyResolver = new PropertyResolver(properties);
+
+        DataSourceConfig db = propertyResolver.bind("db", DataSourceConfig.class);
+        Assert.assertEquals("jdbc:mysql://localhost:3306/test", db.getUrl());
+        Assert.assertEquals(20, db.getMaxPoolSize());
+        Assert.assertEquals(Duration.ofSeconds(5), db.getTimeout());
+        Assert.assertEquals("hikari", db.getPool().getName());
+
+        ServerConfig server = propertyResolver.bind("server", ServerConfig.class);
+        Assert.assertEquals("localhost", server.host);
+        Assert.assertEquals(8080, server.port);
+
+        // 按参数名而不是字段顺序绑定
+        properties.setProperty("endpoint.name", "primary");
+        properties.setProperty("endpoint.host", "10.0.0.1");
+        propertyResolver.reload(properties);
+        EndpointConfig endpoint = propertyResolver.bind("endpoint", EndpointConfig.class);
+        Assert.assertEquals("primary", endpoint.name);
+        Assert.assertEquals("10.0.0.1", endpoint.host);
+
+        // 重新加载后再次绑定
+        properties.setProperty("server.port", "9090");
+        properties.remove("db.pool.name");
+        propertyResolver.reload(properties);
+        Assert.assertEquals(9090, propertyResolver.bind("server", ServerConfig.class).port);
+        Assert.assertNull(propertyResolver.bind("db", DataSourceConfig.class).getPool());
+    }
+
+    @Test
+    public void testPropertySources() throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put("APP_VERSION", "1.0");
+        env.put("APP_NAME", "from-env");
+        Map<String, String> system = new HashMap<>();
+        system.put("app.name", "from-system");
+        system.put("server.port", "8080");
+        Properties props = new Properties();
+        props.setProperty("server.port", "9090");
+        propertyResolver = new PropertyResolver(Arrays.asList(
+                new MapPropertySource(PropertyResolver.APPLICATION_SOURCE, props),
+                new MapPropertySource("systemProperties", system),
+                EnvironmentPropertySource.of(env)), new ConverterRegistry());
+
+        // 宽松名称
+        Assert.assertEquals("1.0", propertyResolver.getProperty("app.version"));
+        Assert.assertEquals("1.0", propertyResolver.getProperty("APP_VERSION"));
+        // 优先级：application > systemProperties > env
+        Assert.assertEquals("from-system", propertyResolver.getProperty("app.name"));
+        Assert.assertEquals(9090, propertyResolver.getInt("server.port"));
+        Assert.assertNull(propertyResolver.getProperty("app.missing"));
+        Assert.assertFalse(propertyResolver.containsProperty("app.missing"));
+
+        // reload只替换application
+        List<Set<String>> changes = new ArrayList<>();
+        propertyResolver.addChangeListener(changes::add);
+        props.remove("server.port");
+        props.setProperty("app.missing", "found");
+        propertyResolver.reload(props);
+        Assert.assertEquals(8080, propertyResolver.getInt("server.port"));
+        Assert.assertEquals("found", propertyResolver.getProperty("app.missing"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("server.port", "app.missing")), changes.get(0));
+        Assert.assertEquals(3, propertyResolver.getPropertySources().size());
+    }
+
+    @Test
+    public void testGetPropertiesWithPrefix() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("datasource", "primary");
+        props.setProperty("datasource.url", "jdbc:h2:mem");
+        props.setProperty("datasource.username", "sa");
+        props.setProperty("datasource.pool.size", "${pool:8}");
+        props.setProperty("data.dir", "/tmp");
+        props.setProperty("server.port", "8080");
+        Map<String, String> env = new HashMap<>();
+        env.put("DATASOURCE_USERNAME", "root");
+        env.put("DATASOURCE_PASSWORD", "secret");
+        propertyResolver = new PropertyResolver(Arrays.asList(
+                new MapPropertySource(PropertyResolver.APPLICATION_SOURCE, props),
+                EnvironmentPropertySource.of(env)), new ConverterRegistry());
+
+        Map<String, String> expected = new TreeMap<>();
+        expected.put("datasource.password", "secret");
+        expected.put("datasource.pool.size", "8");
+        expected.put("datasource.url", "jdbc:h2:mem");
+        expected.put("datasource.username", "sa");
+        Assert.assertEquals(expected, propertyResolver.getPropertiesWithPrefix("datasource."));
+        Assert.assertEquals(Arrays.asList("data.dir", "datasource", "datasource.password", "datasource.pool.size", "datasource.url", "datasource.username"),
+                new ArrayList<>(propertyResolver.getPropertiesWithPrefix("data").keySet()));
+        Assert.assertEquals(Collections.singletonMap("datasource.url", "jdbc:h2:mem"), propertyResolver.getPropertiesWithPrefix("datasource.ur"));
+        Assert.assertTrue(propertyResolver.containsPrefix("datasource.po"));
+        Assert.assertTrue(propertyResolver.containsPrefix("datasource.pass"));
+        Assert.assertFalse(propertyResolver.containsPrefix("datasource.x"));
+        Assert.assertTrue(propertyResolver.getPropertiesWithPrefix("cache.").isEmpty());
+
+        MapPropertySource source = new MapPropertySource("test", props);
+        Assert.assertEquals(6, source.keys().size());
+        Assert.assertTrue(source.keys().contains("datasource"));
+        Assert.assertFalse(source.keys().contains("datasource."));
+        Assert.assertEquals("/tmp", source.getProperty("data.dir"));
+        Assert.assertNull(source.getProperty("data"));
+    }
+
+    public static class ServerGroup {
+        private int port;
+        private List<String> tags;
+
+        public int getPort() { return port; }
+        public void setPort(int port) { this.port = port; }
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+    }
+
+    public static class DataSourceConfig {
+        private String url;
+        private int maxPoolSize;
+        private Duration timeout;
+        private PoolConfig pool;
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        public int getMaxPoolSize() { return maxPoolSize; }
+        public void setMaxPoolSize(int maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+        public Duration getTimeout() { return timeout; }
+        public void setTimeout(Duration timeout) { this.timeout = timeout; }
+        public PoolConfig getPool() { return pool; }
+        public void setPool(PoolConfig pool) { this.pool = pool; }
+    }
+
+    public static class PoolConfig {
+        private String name;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+    }
+
+    /**
+     * 不可变对象，按构造方法绑定
+     */
+    public static final class ServerConfig {
+        final String host;
+        final int port;
+
+        public ServerConfig(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    /**
+     * 字段顺序与构造方法参数顺序不同
+     */
+    static final class EndpointConfig {
+        final String name;
+        final String host;
+
+        EndpointConfig(String host, String name) {
+            this.host = host;
+            this.name = name;
+        }
+    }
+}
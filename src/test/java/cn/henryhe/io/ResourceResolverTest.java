@@ -1,13 +1,38 @@
 package cn.henryhe.io;
 
+import cn.henryhe.utils.ClassPathUtils;
 import mockit.Deencapsulation;
 import mockit.Tested;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ResourceResolverTest {
     @Tested
@@ -63,4 +88,316 @@ public class ResourceResolverTest {
             Assert.assertTrue(classes.contains(clazz));
         }
     }
+
+    @Test
+    public void testScanParallel() throws Exception {
+        ResourceResolver rr = new ResourceResolver("cn.henryhe.io");
+        Function<Resource, String> mapper = res -> {
+            String name = res.getName();
+            if (name.endsWith(".class")) {
+                return name.substring(0, name.length() - 6).replace("/", ".").replace("\\", ".");
+            }
+            return null;
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> classes = rr.scanParallel(mapper, pool);
+            Assert.assertTrue(classes.contains("cn.henryhe.io.Resource"));
+            // 顺序确定
+            Assert.assertEquals(classes, rr.scanParallel(mapper));
+            List<String> sequential = rr.scan(mapper);
+            Assert.assertEquals(new HashSet<>(sequential), new HashSet<>(classes));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testScanWithIndex() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("idx/pkg"));
+        Files.write(root.resolve("idx/pkg/A.class"), new byte[0]);
+        Path index = root.resolve(ResourceIndex.INDEX_LOCATION);
+        Files.createDirectories(index.getParent());
+        Files.write(index, Arrays.asList(ResourceIndex.HEADER, "idx/other/B.class", "idx/pkg/A.class"));
+        // 索引生成后新增的类
+        Files.write(root.resolve("idx/pkg/New.class"), new byte[0]);
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            ResourceResolver rr = new ResourceResolver("idx.pkg");
+            // 默认不使用索引
+            List<String> walked = rr.scan(Resource::getName);
+            Collections.sort(walked);
+            Assert.assertEquals(Arrays.asList("idx/pkg/A.class", "idx/pkg/New.class"), walked);
+            rr.setUseIndex(true);
+            Assert.assertEquals(Collections.singletonList("idx/pkg/A.class"), rr.scan(Resource::getName));
+            Assert.assertEquals(Collections.singletonList("idx/pkg/A.class"), rr.scanParallel(Resource::getName));
+
+            // 索引中的条目已被删除，视为过期，回退到遍历
+            Files.write(index, Arrays.asList(ResourceIndex.HEADER, "idx/pkg/A.class", "idx/pkg/Ghost.class"));
+            walked = rr.scan(Resource::getName);
+            Collections.sort(walked);
+            Assert.assertEquals(Arrays.asList("idx/pkg/A.class", "idx/pkg/New.class"), walked);
+            Assert.assertEquals(Arrays.asList("idx/pkg/A.class", "idx/pkg/New.class"), rr.scanParallel(Resource::getName));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testScanWithCache() throws Exception {
+        Path root = temporaryFolder.newFolder("classes").toPath();
+        Path pkg = Files.createDirectories(root.resolve("cached/pkg"));
+        Files.write(pkg.resolve("A.class"), new byte[0]);
+        Path cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            ResourceResolver rr = new ResourceResolver("cached.pkg");
+            rr.setCacheDirectory(cacheDir);
+            Assert.assertEquals(Collections.singletonList("cached/pkg/A.class"), rr.scan(Resource::getName));
+
+            // 目录修改时间不变时直接命中缓存
+            FileTime lastModified = Files.getLastModifiedTime(pkg);
+            Files.write(pkg.resolve("B.class"), new byte[0]);
+            Files.setLastModifiedTime(pkg, lastModified);
+            Assert.assertEquals(Collections.singletonList("cached/pkg/A.class"), rr.scan(Resource::getName));
+
+            // 目录变化后重新遍历
+            Files.setLastModifiedTime(pkg, FileTime.fromMillis(lastModified.toMillis() + 1000));
+            Assert.assertEquals(Arrays.asList("cached/pkg/A.class", "cached/pkg/B.class"), rr.scanParallel(Resource::getName));
+
+            // 目录与文件同名前缀时，遍历和缓存的结果顺序一致（'-'排在'/'之前）
+            Files.createDirectories(pkg.resolve("config"));
+            Files.write(pkg.resolve("config/C.txt"), new byte[0]);
+            Files.write(pkg.resolve("config-dev.yml"), new byte[0]);
+            List<String> walked = rr.scanParallel(Resource::getName);
+            Assert.assertEquals(Arrays.asList("cached/pkg/A.class", "cached/pkg/B.class", "cached/pkg/config-dev.yml", "cached/pkg/config/C.txt"), walked);
+            Assert.assertEquals(walked, rr.scanParallel(Resource::getName));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testScanJar() throws Exception {
+        Path jar = temporaryFolder.getRoot().toPath().resolve("scan.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (String name : new String[] {"jarpkg/", "jarpkg/a/", "jarpkg/a/A.class", "jarpkg/a/sub/", "jarpkg/a/sub/C.class", "jarpkg/b/", "jarpkg/b/B.class"}) {
+                output.putNextEntry(new JarEntry(name));
+                output.closeEntry();
+            }
+        }
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        JarFileCache jarFileCache = new JarFileCache(1);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {jar.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            ResourceResolver a = new ResourceResolver("jarpkg.a");
+            a.setJarFileCache(jarFileCache);
+            ResourceResolver b = new ResourceResolver("jarpkg.b");
+            b.setJarFileCache(jarFileCache);
+            // 同一个jar以不同的包多次扫描
+            Assert.assertEquals(Arrays.asList("jarpkg/a/A.class", "jarpkg/a/sub/C.class"), a.scan(Resource::getName));
+            Assert.assertEquals(Collections.singletonList("jarpkg/b/B.class"), b.scan(Resource::getName));
+            Assert.assertEquals(Arrays.asList("jarpkg/a/A.class", "jarpkg/a/sub/C.class"), a.scanParallel(Resource::getName));
+            try (Stream<Resource> stream = a.stream()) {
+                Assert.assertEquals(Arrays.asList("jarpkg/a/A.class", "jarpkg/a/sub/C.class"), stream.map(Resource::getName).collect(Collectors.toList()));
+            }
+            Assert.assertEquals(1, jarFileCache.size());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+            jarFileCache.clear();
+        }
+    }
+
+    @Test
+    public void testResourceContent() throws Exception {
+        byte[] content = "hello resource".getBytes(StandardCharsets.UTF_8);
+        Path jar = temporaryFolder.getRoot().toPath().resolve("content.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("contentjar/"));
+            output.closeEntry();
+            JarEntry entry = new JarEntry("contentjar/a.txt");
+            entry.setTime(1600000000000L);
+            output.putNextEntry(entry);
+            output.write(content);
+            output.closeEntry();
+        }
+        Path root = temporaryFolder.newFolder("content-dir").toPath();
+        Files.createDirectories(root.resolve("contentdir"));
+        Files.write(root.resolve("contentdir/b.txt"), content);
+        Files.setLastModifiedTime(root.resolve("contentdir/b.txt"), FileTime.fromMillis(1600000000000L));
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        JarFileCache jarFileCache = new JarFileCache(4);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {jar.toUri().toURL(), root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            List<Resource> resources = new ArrayList<>();
+            for (String pkg : new String[] {"contentjar", "contentdir"}) {
+                ResourceResolver rr = new ResourceResolver(pkg);
+                rr.setJarFileCache(jarFileCache);
+                resources.addAll(rr.scan(Function.identity()));
+            }
+            Assert.assertEquals(2, resources.size());
+            for (Resource res : resources) {
+                Assert.assertEquals(content.length, res.size());
+                Assert.assertEquals(1600000000000L / 2000, res.lastModified() / 2000);
+                try (InputStream input = res.openStream()) {
+                    Assert.assertArrayEquals(content, ClassPathUtils.readAllBytes(input));
+                }
+                ByteBuffer buffer = res.map();
+                byte[] mapped = new byte[buffer.remaining()];
+                buffer.get(mapped);
+                Assert.assertArrayEquals(content, mapped);
+                try (ReadableByteChannel channel = res.openChannel()) {
+                    ByteBuffer read = ByteBuffer.allocate(64);
+                    while (channel.read(read) > 0) {
+                        // 读到末尾
+                    }
+                    Assert.assertEquals(content.length, read.position());
+                }
+            }
+            Assert.assertTrue(resources.get(0).isInJar());
+            Assert.assertFalse(resources.get(1).isInJar());
+            Assert.assertEquals("contentjar/a.txt", resources.get(0).getName());
+            Assert.assertTrue(resources.get(0).getPath().endsWith("content.jar!"));
+            Assert.assertEquals("contentdir" + java.io.File.separator + "b.txt", resources.get(1).getName());
+            Assert.assertEquals("file:" + root.resolve("contentdir/b.txt"), resources.get(1).getPath());
+            // 非Latin-1的名称保持原样
+            Resource unicode = new Resource("file:/tmp/配置.txt", "配置.txt");
+            Assert.assertEquals("配置.txt", unicode.getName());
+            Assert.assertEquals("file:/tmp/配置.txt", unicode.getPath());
+            // 读取时复用扫描时打开的jar
+            Assert.assertEquals(1, jarFileCache.size());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+            jarFileCache.clear();
+        }
+    }
+
+    @Test
+    public void testReadClassPathFiles() throws Exception {
+        Path root = temporaryFolder.newFolder("read-classpath").toPath();
+        Files.createDirectories(root.resolve("read"));
+        String small = "name=中文\n";
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < (2 << 20)) {
+            sb.append("line ").append(sb.length()).append(" 配置\n");
+        }
+        String large = sb.toString();
+        String medium = large.substring(0, 200 * 1024);
+        Files.write(root.resolve("read/small.txt"), small.getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("read/medium.txt"), medium.getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("read/large.txt"), large.getBytes(StandardCharsets.UTF_8));
+        Path jar = temporaryFolder.getRoot().toPath().resolve("read.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("readjar/medium.txt"));
+            output.write(medium.getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL(), jar.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            Assert.assertEquals(small, ClassPathUtils.readString("read/small.txt"));
+            Assert.assertEquals(small, ClassPathUtils.readString("/read/small.txt"));
+            Assert.assertEquals(medium, ClassPathUtils.readString("read/medium.txt"));
+            Assert.assertEquals(large, ClassPathUtils.readString("read/large.txt"));
+            Assert.assertArrayEquals(medium.getBytes(StandardCharsets.UTF_8), ClassPathUtils.readAllBytes("read/medium.txt"));
+            Assert.assertEquals(medium, ClassPathUtils.readString("readjar/medium.txt"));
+            Assert.assertArrayEquals(medium.getBytes(StandardCharsets.UTF_8), ClassPathUtils.readAllBytes("readjar/medium.txt"));
+            Assert.assertArrayEquals(small.getBytes(StandardCharsets.UTF_8),
+                    ClassPathUtils.readAllBytes(new ByteArrayInputStream(small.getBytes(StandardCharsets.UTF_8))));
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+            JarFileCache.shared().clear();
+        }
+    }
+
+    @Test
+    public void testReadAsync() throws Exception {
+        Path root = temporaryFolder.newFolder("read-async").toPath();
+        Files.createDirectories(root.resolve("async"));
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Files.write(root.resolve("async/" + i + ".txt"), ("content " + i).getBytes(StandardCharsets.UTF_8));
+            paths.add("async/" + i + ".txt");
+        }
+        Files.write(root.resolve("async/app.properties"), "name=async".getBytes(StandardCharsets.UTF_8));
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            // 工作线程使用调用方的ClassLoader
+            Assert.assertEquals("content 3", ClassPathUtils.readStringAsync("async/3.txt").get());
+            Assert.assertEquals("async", ClassPathUtils.readPropertiesByNameAsync("async/app.properties").get().getProperty("name"));
+            Assert.assertTrue(ClassPathUtils.readInputStreamAsync("async/1.txt", input -> Thread.currentThread().getName()).get()
+                    .startsWith("io-reader-"));
+            Map<String, String> contents = ClassPathUtils.readAll(paths).get();
+            Assert.assertEquals(paths, new ArrayList<>(contents.keySet()));
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals("content " + i, contents.get("async/" + i + ".txt"));
+            }
+            try {
+                ClassPathUtils.readAll(Arrays.asList("async/1.txt", "async/missing.txt")).get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RuntimeException);
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        ResourceResolver rr = new ResourceResolver("cn.henryhe.io");
+        try (Stream<Resource> stream = rr.stream()) {
+            Optional<Resource> first = stream.filter(res -> res.getName().endsWith("Resource.class")).findFirst();
+            Assert.assertTrue(first.isPresent());
+        }
+        List<String> names = rr.scan(Resource::getName);
+        try (Stream<Resource> stream = rr.stream().parallel()) {
+            Assert.assertEquals(names.size(), stream.map(Resource::getName).distinct().count());
+        }
+    }
+
+    @Test
+    public void testScanClassMetadata() throws Exception {
+        ResourceResolver rr = new ResourceResolver("cn.henryhe.io");
+        List<ClassMetadata> metadata = rr.scanClassMetadata(m -> m.hasAnnotation(FunctionalInterface.class));
+        ClassMetadata callback = metadata.stream()
+                .filter(m -> m.getClassName().equals("cn.henryhe.io.InputStreamCallback"))
+                .findFirst().get();
+        Assert.assertTrue(callback.isInterface());
+        Assert.assertEquals("java.lang.Object", callback.getSuperClassName());
+
+        ClassMetadata resolver = rr.scanClassMetadata(m -> m.getClassName().endsWith("$DirectoryScanTask")).get(0);
+        Assert.assertEquals("java.util.concurrent.RecursiveTask", resolver.getSuperClassName());
+    }
+
+    @Test
+    public void testScanClassMetadataSkipsCorruptClass() throws Exception {
+        Path root = temporaryFolder.newFolder("corrupt-classes").toPath();
+        Path pkg = Files.createDirectories(root.resolve("corrupt/pkg"));
+        Files.write(pkg.resolve("Good.class"), ClassPathUtils.readAllBytes("cn/henryhe/io/InputStreamCallback.class"));
+        Files.write(pkg.resolve("Bad.class"), new byte[] {(byte) 0xCA, (byte) 0xFE, 0});
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(cl);
+            ResourceResolver rr = new ResourceResolver("corrupt.pkg");
+            List<ClassMetadata> metadata = rr.scanClassMetadata(m -> true);
+            Assert.assertEquals(1, metadata.size());
+            Assert.assertEquals("cn.henryhe.io.InputStreamCallback", metadata.get(0).getClassName());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
 }